@@ -0,0 +1,44 @@
+package model;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs an action once for each index of a range on a ForkJoinPool, splitting
+ * the range in half until each task holds a single index.
+ *
+ * @author Andrew Dennison
+ */
+class BlockTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	private final int start;
+	private final int end;
+	private final IntConsumer action;
+
+	/**
+	 * Create a task for a range of indices.
+	 *
+	 * @param start  The first index
+	 * @param end    The index after the last
+	 * @param action The action to run for each index
+	 */
+	BlockTask(int start, int end, IntConsumer action) {
+		this.start = start;
+		this.end = end;
+		this.action = action;
+	}
+
+	@Override
+	protected void compute() {
+		if (end - start <= 1) {
+			if (start < end) {
+				action.accept(start);
+			}
+			return;
+		}
+
+		int middle = (start + end) >>> 1;
+		invokeAll(new BlockTask(start, middle, action), new BlockTask(middle, end, action));
+	}
+}
@@ -0,0 +1,127 @@
+package model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Provides decoding of bytes encoded by {@link ByteEncode}.
+ *
+ * Codes of up to {@link #TABLE_BITS} bits are resolved with one table lookup.
+ * Longer codes are finished from the canonical code one bit at a time.
+ *
+ * @author Andrew Dennison
+ */
+public class ByteDecode {
+
+	/**
+	 * The number of bits resolved per table lookup.
+	 */
+	public static final int TABLE_BITS = 11;
+
+	/**
+	 * Decode an array created by {@link ByteEncode#encode(byte[])}.
+	 *
+	 * @param encoding The encoded bytes
+	 * @return The decoded bytes
+	 */
+	public static byte[] decode(byte[] encoding) {
+		return decode(ByteBuffer.wrap(encoding)).array();
+	}
+
+	/**
+	 * Decode an encoding which begins at the position of a buffer. The position
+	 * of the input is moved to the end of the encoding.
+	 *
+	 * @param encoding The encoded bytes
+	 * @return A heap buffer holding exactly the decoded bytes, positioned at 0
+	 */
+	public static ByteBuffer decode(ByteBuffer encoding) {
+		int numBytes;
+		CanonicalCode code;
+		try {
+			numBytes = encoding.getInt();
+			code = CanonicalCode.readHeader(encoding);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Encoding ends before its header", e);
+		}
+
+		if (numBytes < 0) {
+			throw new IllegalArgumentException("Invalid length: " + numBytes);
+		}
+		if (numBytes > 0 && code.size() == 0) {
+			throw new IllegalArgumentException("Encoding has no codes for its " + numBytes + " bytes");
+		}
+
+		// Every symbol of the header must be a byte value
+		int byteSymbols = 0;
+		for (int b = 0; b < ByteEncode.ALPHABET_SIZE; b++) {
+			if (code.codeLength(b) > 0) {
+				byteSymbols++;
+			}
+		}
+		if (byteSymbols != code.size()) {
+			throw new IllegalArgumentException("Header holds symbols which are not between 0 and "
+					+ (ByteEncode.ALPHABET_SIZE - 1));
+		}
+
+		// Build the table: the high 8 bits of each entry hold the code length
+		int maxCodeLength = code.maxCodeLength();
+		int tableBits = Math.max(1, Math.min(TABLE_BITS, maxCodeLength));
+		int[] table = new int[1 << tableBits];
+		for (int b = 0; b < ByteEncode.ALPHABET_SIZE; b++) {
+			int length = code.codeLength(b);
+			if (length == 0 || length > tableBits) {
+				continue;
+			}
+
+			int first = code.code(b) << (tableBits - length);
+			for (int i = first; i < first + (1 << (tableBits - length)); i++) {
+				table[i] = length << Byte.SIZE | b;
+			}
+		}
+
+		byte[] output = new byte[numBytes];
+		int inputIndex = encoding.position();
+		int inputEnd = encoding.limit();
+
+		// Bits not yet decoded, left aligned, padded with 0s past the input
+		long window = 0;
+		int windowBits = 0;
+
+		for (int i = 0; i < numBytes; i++) {
+			// Refill so the longest code is always available
+			while (windowBits <= Long.SIZE - Byte.SIZE && inputIndex < inputEnd) {
+				window |= (encoding.get(inputIndex++) & 0xFFL) << (Long.SIZE - Byte.SIZE - windowBits);
+				windowBits += Byte.SIZE;
+			}
+
+			int entry = table[(int) (window >>> (Long.SIZE - tableBits))];
+			int length = entry >>> Byte.SIZE;
+			int symbol = entry & 0xFF;
+
+			if (length == 0) {
+				// The code is longer than the table
+				symbol = -1;
+				for (length = tableBits + 1; length <= maxCodeLength && symbol < 0; length++) {
+					symbol = code.symbolFor(window >>> (Long.SIZE - length), length);
+				}
+				length--;
+				if (symbol < 0) {
+					throw new IllegalArgumentException("Encoding contains a code which is not in its header");
+				}
+			}
+
+			if (length > windowBits) {
+				throw new IllegalArgumentException("Encoding ends after " + i + " of " + numBytes + " bytes");
+			}
+
+			output[i] = (byte) symbol;
+			window <<= length;
+			windowBits -= length;
+		}
+
+		// Skip the bytes already consumed, leaving the position after the padding
+		encoding.position(inputIndex - windowBits / Byte.SIZE);
+		return ByteBuffer.wrap(output);
+	}
+}
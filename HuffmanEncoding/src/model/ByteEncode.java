@@ -0,0 +1,134 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides Huffman encoding of raw bytes, using each of the 256 byte values as
+ * a symbol. No charset conversion takes place, so binary data and text which
+ * is already encoded can be compressed directly.
+ *
+ * The encoding is self-contained and laid out as:
+ *
+ * <pre>
+ * int numBytes, canonical code header, bits...
+ * </pre>
+ *
+ * where the header is written by {@link CanonicalCode#toHeader()} and the bits
+ * are packed most significant bit first and zero padded to a whole byte.
+ *
+ * @author Andrew Dennison
+ */
+public class ByteEncode {
+
+	/**
+	 * The number of distinct byte values.
+	 */
+	public static final int ALPHABET_SIZE = 256;
+
+	/**
+	 * Encode an array of bytes.
+	 *
+	 * @param input The bytes to encode
+	 * @return The encoding, including the code header
+	 */
+	public static byte[] encode(byte[] input) {
+		ByteBuffer encoded = encode(ByteBuffer.wrap(input));
+		return encoded.array();
+	}
+
+	/**
+	 * Encode the bytes between the position and limit of a buffer. The position
+	 * of the input is moved to its limit.
+	 *
+	 * @param input The bytes to encode
+	 * @return A heap buffer holding exactly the encoding, positioned at 0
+	 */
+	public static ByteBuffer encode(ByteBuffer input) {
+		int start = input.position();
+		int end = input.limit();
+
+		int[] frequencies = new int[ALPHABET_SIZE];
+		for (int i = start; i < end; i++) {
+			frequencies[input.get(i) & 0xFF]++;
+		}
+
+		CanonicalCode code = buildCode(frequencies);
+
+		// Copy the codes into flat arrays for the encoding loop
+		int[] codes = new int[ALPHABET_SIZE];
+		int[] codeLengths = new int[ALPHABET_SIZE];
+		long numBits = 0;
+		for (int b = 0; b < ALPHABET_SIZE; b++) {
+			if (frequencies[b] > 0) {
+				codes[b] = code.code(b);
+				codeLengths[b] = code.codeLength(b);
+				numBits += (long) frequencies[b] * codeLengths[b];
+			}
+		}
+
+		byte[] header = code.toHeader();
+		long size = Integer.BYTES + header.length + (numBits + Byte.SIZE - 1) / Byte.SIZE;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding is larger than " + Integer.MAX_VALUE + " bytes");
+		}
+
+		ByteBuffer output = ByteBuffer.allocate((int) size);
+		output.putInt(end - start);
+		output.put(header);
+
+		// Bits waiting to be stored, right aligned
+		long pending = 0;
+		int pendingBits = 0;
+		byte[] dst = output.array();
+		int outputIndex = output.position();
+
+		for (int i = start; i < end; i++) {
+			int b = input.get(i) & 0xFF;
+			pending = pending << codeLengths[b] | (codes[b] & 0xFFFFFFFFL);
+			pendingBits += codeLengths[b];
+
+			while (pendingBits >= Byte.SIZE) {
+				pendingBits -= Byte.SIZE;
+				dst[outputIndex++] = (byte) (pending >>> pendingBits);
+			}
+		}
+
+		if (pendingBits > 0) {
+			dst[outputIndex] = (byte) (pending << (Byte.SIZE - pendingBits));
+		}
+
+		input.position(end);
+		output.rewind();
+		return output;
+	}
+
+	/**
+	 * Build a canonical code from the frequency of each byte value. Code lengths
+	 * are limited to {@link CanonicalCode#MAX_CODE_LENGTH} bits, since very
+	 * skewed input would otherwise give a Huffman tree deeper than the header
+	 * can describe.
+	 *
+	 * @param frequencies The frequency of each byte value
+	 * @return The canonical code, with no codes if every frequency is 0
+	 */
+	private static CanonicalCode buildCode(int[] frequencies) {
+		char[] symbols = new char[ALPHABET_SIZE];
+		long[] counts = new long[ALPHABET_SIZE];
+		int size = 0;
+
+		for (int b = 0; b < ALPHABET_SIZE; b++) {
+			if (frequencies[b] > 0) {
+				symbols[size] = (char) b;
+				counts[size] = frequencies[b];
+				size++;
+			}
+		}
+
+		int[] lengths = PackageMerge.codeLengths(symbols, counts, size, CanonicalCode.MAX_CODE_LENGTH);
+		int[] byteValues = new int[size];
+		for (int i = 0; i < size; i++) {
+			byteValues[i] = symbols[i];
+		}
+		return CanonicalCode.fromLengths(byteValues, lengths);
+	}
+}
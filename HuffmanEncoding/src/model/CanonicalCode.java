@@ -0,0 +1,578 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * A canonical Huffman code, which is fully described by the code length of
+ * each symbol.
+ *
+ * Symbols are ordered by code length and then by value. The first symbol
+ * receives the code of all 0s, and every following symbol receives the next
+ * binary number, shifted left whenever the code length grows. Because of this,
+ * only the code lengths need to be sent alongside the encoded data; the
+ * receiver rebuilds exactly the same codes from them without a HuffmanNode
+ * tree.
+ *
+ * The header written by {@link #toHeader()} is a varint symbol count followed
+ * by one (varint symbol delta, length byte) pair per symbol in ascending symbol
+ * order.
+ *
+ * @author Andrew Dennison
+ */
+public class CanonicalCode {
+
+	/**
+	 * The longest code length a canonical code may contain.
+	 */
+	public static final int MAX_CODE_LENGTH = 32;
+
+	/**
+	 * The largest symbol a canonical code may contain. This is one past the
+	 * largest char, leaving room for a single symbol outside of the char range.
+	 */
+	public static final int MAX_SYMBOL = Character.MAX_VALUE + 1;
+
+	// Symbols in canonical order: by code length, then by value
+	private final int[] sortedSymbols;
+	// Code lengths of sortedSymbols
+	private final int[] sortedLengths;
+
+	// The code and code length of each symbol, indexed by the symbol itself
+	private final int[] codes;
+	private final byte[] codeLengths;
+
+	// For each code length, the number of codes, the first code, and the index
+	// of the first symbol with that length in sortedSymbols
+	private final int[] count = new int[MAX_CODE_LENGTH + 1];
+	private final long[] firstCode = new long[MAX_CODE_LENGTH + 1];
+	private final int[] firstIndex = new int[MAX_CODE_LENGTH + 1];
+
+	/**
+	 * Create a canonical code from pairs of symbols and code lengths.
+	 *
+	 * @param symbols The symbols to assign codes to, each appearing once
+	 * @param lengths The code length of each symbol, between 1 and
+	 *                {@link #MAX_CODE_LENGTH}
+	 */
+	private CanonicalCode(int[] symbols, int[] lengths) {
+		int size = symbols.length;
+		int maxSymbol = -1;
+		long kraftSum = 0; // Sum of 2^(MAX_CODE_LENGTH - length) over all codes
+
+		for (int i = 0; i < size; i++) {
+			if (symbols[i] < 0 || symbols[i] > MAX_SYMBOL) {
+				throw new IllegalArgumentException("Symbols must be between 0 and " + MAX_SYMBOL + ": " + symbols[i]);
+			}
+			if (lengths[i] < 1 || lengths[i] > MAX_CODE_LENGTH) {
+				throw new IllegalArgumentException("Code lengths must be between 1 and " + MAX_CODE_LENGTH + ": " + lengths[i]);
+			}
+			maxSymbol = Math.max(maxSymbol, symbols[i]);
+			kraftSum += 1L << (MAX_CODE_LENGTH - lengths[i]);
+		}
+
+		if (kraftSum > 1L << MAX_CODE_LENGTH) {
+			throw new IllegalArgumentException("Code lengths do not form a prefix code");
+		}
+
+		// Sort by (length, symbol) using the packed value as the key
+		long[] order = new long[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = (long) lengths[i] << Integer.SIZE | symbols[i];
+		}
+		Arrays.sort(order);
+
+		this.sortedSymbols = new int[size];
+		this.sortedLengths = new int[size];
+		this.codes = new int[maxSymbol + 1];
+		this.codeLengths = new byte[maxSymbol + 1];
+
+		long code = 0;
+		int length = 1;
+		for (int i = 0; i < size; i++) {
+			int symbol = (int) order[i];
+			int symbolLength = (int) (order[i] >>> Integer.SIZE);
+
+			if (codeLengths[symbol] != 0) {
+				throw new IllegalArgumentException("Symbol appears more than once: " + symbol);
+			}
+
+			// Move to the next code length, extending the code with 0s
+			while (length < symbolLength) {
+				length++;
+				code <<= 1;
+			}
+			if (count[length] == 0) {
+				firstCode[length] = code;
+				firstIndex[length] = i;
+			}
+
+			sortedSymbols[i] = symbol;
+			sortedLengths[i] = symbolLength;
+			codes[symbol] = (int) code;
+			codeLengths[symbol] = (byte) symbolLength;
+			count[length]++;
+			code++;
+		}
+	}
+
+	/**
+	 * Create a canonical code from pairs of symbols and code lengths.
+	 *
+	 * @param symbols The symbols to assign codes to, each appearing once
+	 * @param lengths The code length of each symbol
+	 * @return The canonical code for the given lengths
+	 */
+	public static CanonicalCode fromLengths(int[] symbols, int[] lengths) {
+		if (symbols.length != lengths.length) {
+			throw new IllegalArgumentException("Every symbol needs exactly one code length");
+		}
+		return new CanonicalCode(symbols.clone(), lengths.clone());
+	}
+
+	/**
+	 * Create a canonical code which gives every character the same code length
+	 * it has in a Huffman tree. A tree of a single leaf gives its character a
+	 * code length of 1.
+	 *
+	 * @param root The root of a Huffman tree
+	 * @return The canonical code with the same code lengths as the tree
+	 */
+	public static CanonicalCode fromTree(HuffmanNode root) {
+		int leaves = countLeaves(root);
+		int[] symbols = new int[leaves];
+		int[] lengths = new int[leaves];
+
+		if (root != null && root.isLeaf()) {
+			symbols[0] = root.getData();
+			lengths[0] = 1;
+		} else {
+			collectLengths(root, 0, symbols, lengths, 0);
+		}
+
+		return new CanonicalCode(symbols, lengths);
+	}
+
+	/**
+	 * Count the leaves below a node.
+	 *
+	 * @param node The node to count from
+	 * @return The number of leaves in the subtree
+	 */
+	private static int countLeaves(HuffmanNode node) {
+		if (node == null) {
+			return 0;
+		}
+		if (node.isLeaf()) {
+			return 1;
+		}
+		return countLeaves(node.getLeftChild()) + countLeaves(node.getRightChild());
+	}
+
+	/**
+	 * Recursively record the depth of every leaf below a node.
+	 *
+	 * @param node    The current node in the Huffman tree
+	 * @param depth   The depth of node
+	 * @param symbols Array to store each leaf's character in
+	 * @param lengths Array to store each leaf's depth in
+	 * @param next    The next free index of symbols and lengths
+	 * @return The next free index after this subtree has been recorded
+	 */
+	private static int collectLengths(HuffmanNode node, int depth, int[] symbols, int[] lengths, int next) {
+		if (node == null) {
+			return next;
+		}
+
+		if (node.isLeaf()) {
+			symbols[next] = node.getData();
+			lengths[next] = depth;
+			return next + 1;
+		}
+
+		next = collectLengths(node.getLeftChild(), depth + 1, symbols, lengths, next);
+		return collectLengths(node.getRightChild(), depth + 1, symbols, lengths, next);
+	}
+
+	/**
+	 * Read a canonical code back from a header created by {@link #toHeader()}.
+	 *
+	 * @param header The header bytes
+	 * @return The canonical code described by the header
+	 */
+	public static CanonicalCode fromHeader(byte[] header) {
+		return readHeader(ByteBuffer.wrap(header));
+	}
+
+	/**
+	 * Read a canonical code from a header created by {@link #toHeader()} which
+	 * begins at the position of a buffer. The position is moved past the header.
+	 *
+	 * @param src The buffer to read from
+	 * @return The canonical code described by the header
+	 */
+	static CanonicalCode readHeader(ByteBuffer src) {
+		int size = readVarint(src);
+		if (size > MAX_SYMBOL + 1) {
+			throw new IllegalArgumentException("Header holds too many symbols: " + size);
+		}
+		int[] symbols = new int[size];
+		int[] lengths = new int[size];
+
+		int symbol = 0;
+		for (int i = 0; i < size; i++) {
+			symbol += readVarint(src);
+			symbols[i] = symbol;
+			if (!src.hasRemaining()) {
+				throw new IllegalArgumentException("Header ends before all code lengths were read");
+			}
+			lengths[i] = src.get();
+		}
+
+		return new CanonicalCode(symbols, lengths);
+	}
+
+	/**
+	 * Write the code lengths of this code as a compact header. The header holds
+	 * no codes, since they are rebuilt from the lengths.
+	 *
+	 * @return The header bytes
+	 */
+	public byte[] toHeader() {
+		// At most 5 bytes per varint and 1 byte per length
+		byte[] header = new byte[5 + 6 * sortedSymbols.length];
+		int position = writeVarint(header, 0, sortedSymbols.length);
+
+		int previous = 0;
+		for (int symbol = 0; symbol < codeLengths.length; symbol++) {
+			if (codeLengths[symbol] != 0) {
+				position = writeVarint(header, position, symbol - previous);
+				header[position++] = codeLengths[symbol];
+				previous = symbol;
+			}
+		}
+
+		return Arrays.copyOf(header, position);
+	}
+
+	/**
+	 * Write an unsigned value 7 bits at a time, lowest bits first.
+	 *
+	 * @param dst      The array to write to
+	 * @param position The index to write the first byte at
+	 * @param value    The value to write
+	 * @return The index after the last byte written
+	 */
+	private static int writeVarint(byte[] dst, int position, int value) {
+		while ((value & ~0x7F) != 0) {
+			dst[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dst[position++] = (byte) value;
+		return position;
+	}
+
+	/**
+	 * Read an unsigned value written by writeVarint.
+	 *
+	 * @param src The buffer to read from, whose position is advanced past the
+	 *            value
+	 * @return The value read
+	 */
+	private static int readVarint(ByteBuffer src) {
+		int value = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+			if (!src.hasRemaining()) {
+				throw new IllegalArgumentException("Header ends in the middle of a value");
+			}
+			byte b = src.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Header contains a malformed value");
+	}
+
+	/**
+	 * The number of symbols which have a code.
+	 *
+	 * @return The number of symbols
+	 */
+	public int size() {
+		return sortedSymbols.length;
+	}
+
+	/**
+	 * Get the code length of a symbol.
+	 *
+	 * @param symbol The symbol to look up
+	 * @return The code length, or 0 if the symbol has no code
+	 */
+	public int codeLength(int symbol) {
+		return symbol >= 0 && symbol < codeLengths.length ? codeLengths[symbol] : 0;
+	}
+
+	/**
+	 * Get the code of a symbol. Only the lowest {@link #codeLength(int)} bits are
+	 * used.
+	 *
+	 * @param symbol The symbol to look up
+	 * @return The code of the symbol
+	 */
+	public int code(int symbol) {
+		if (codeLength(symbol) == 0) {
+			throw new IllegalArgumentException("No code for symbol " + symbol);
+		}
+		return codes[symbol];
+	}
+
+	/**
+	 * The longest code length used by any symbol.
+	 *
+	 * @return The longest code length, or 0 if there are no symbols
+	 */
+	int maxCodeLength() {
+		return sortedLengths.length == 0 ? 0 : sortedLengths[sortedLengths.length - 1];
+	}
+
+	/**
+	 * Find the symbol with a given code.
+	 *
+	 * @param code   The code, right aligned
+	 * @param length The number of bits in the code
+	 * @return The symbol with this code, or -1 if no symbol has it
+	 */
+	int symbolFor(long code, int length) {
+		// Codes of one length are consecutive, so one subtraction finds the symbol
+		long offset = code - firstCode[length];
+		return offset >= 0 && offset < count[length] ? sortedSymbols[firstIndex[length] + (int) offset] : -1;
+	}
+
+	/**
+	 * Encode a String with this code, in the same {numBits, bits, bits...} format
+	 * as {@link Encode#encodeBits(String, HuffmanNode)}. The output array is sized
+	 * exactly before any bits are written.
+	 *
+	 * @param input The string to convert to bits
+	 * @return An integer array of {numBits, bits, bits, bits...}
+	 */
+	public int[] encodeBits(String input) {
+		long length = bitLength(input, 0, input.length());
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding is longer than " + Integer.MAX_VALUE + " bits");
+		}
+
+		// Like Encode.encodeBits, an empty encoding still holds one word of bits
+		int[] bits = new int[Math.max(1, (int) ((length + Integer.SIZE - 1) / Integer.SIZE)) + 1];
+		bits[0] = (int) length;
+		encode(input, 0, input.length(), bits, 1);
+		return bits;
+	}
+
+	/**
+	 * Find the number of bits needed to encode part of a sequence of characters.
+	 *
+	 * @param input The characters to measure
+	 * @param start The index of the first character
+	 * @param end   The index after the last character
+	 * @return The number of bits in the encoding
+	 */
+	long bitLength(CharSequence input, int start, int end) {
+		long length = 0;
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			if (codeLength(c) == 0) {
+				throw new IllegalArgumentException("No code for character " + (int) c);
+			}
+			length += codeLengths[c];
+		}
+		return length;
+	}
+
+	/**
+	 * Encode part of a sequence of characters into ints, most significant bit
+	 * first. The destination must have room for {@link #bitLength} bits and is
+	 * zero padded after the last bit.
+	 *
+	 * @param input  The characters to encode
+	 * @param start  The index of the first character
+	 * @param end    The index after the last character
+	 * @param dst    The array to store the bits in
+	 * @param dstOff The index of the first int to store bits in
+	 * @return The number of bits written
+	 */
+	long encode(CharSequence input, int start, int end, int[] dst, int dstOff) {
+		// Bits waiting to be stored, right aligned
+		long pending = 0;
+		int pendingBits = 0;
+		int posInArr = dstOff;
+		long length = 0;
+
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			int codeLength = c < codeLengths.length ? codeLengths[c] : 0;
+			if (codeLength == 0) {
+				throw new IllegalArgumentException("No code for character " + (int) c);
+			}
+
+			pending = pending << codeLength | (codes[c] & 0xFFFFFFFFL);
+			pendingBits += codeLength;
+			length += codeLength;
+
+			if (pendingBits >= Integer.SIZE) {
+				pendingBits -= Integer.SIZE;
+				dst[posInArr++] = (int) (pending >>> pendingBits);
+			}
+		}
+
+		if (pendingBits > 0) {
+			dst[posInArr] = (int) (pending << (Integer.SIZE - pendingBits));
+		}
+
+		return length;
+	}
+
+	/**
+	 * Decode bits created by {@link #encodeBits(String)}.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @return The decoded String
+	 * @throws IllegalArgumentException If the encoding holds a code which is not in
+	 *                                  this code, or the code of
+	 *                                  {@link #MAX_SYMBOL}
+	 */
+	public String decode(int[] encoding) {
+		StringBuilder result = new StringBuilder();
+		decode(encoding, 1, encoding[0], result);
+		return result.toString();
+	}
+
+	/**
+	 * Decode bits stored in ints, most significant bit first, into a destination
+	 * array.
+	 *
+	 * @param src       The encoded bits
+	 * @param srcOff    The index of the int holding the first bit
+	 * @param bitLength The number of bits to decode
+	 * @param dst       The array to store decoded characters in
+	 * @return The number of characters decoded
+	 */
+	int decode(int[] src, int srcOff, long bitLength, char[] dst) {
+		int decoded = 0;
+		long code = 0;
+		int codeLength = 0;
+
+		for (long index = 0; index < bitLength; index++) {
+			int currVal = src[(int) (index >>> 5) + srcOff] >>> (31 - (index & 31)) & 0x1;
+			code = code << 1 | currVal;
+			codeLength++;
+
+			// Codes of one length are consecutive, so one subtraction finds the symbol
+			long offset = code - firstCode[codeLength];
+			if (offset < count[codeLength]) {
+				if (decoded == dst.length) {
+					throw new IllegalArgumentException("Encoding holds more than " + dst.length + " characters");
+				}
+				dst[decoded++] = toChar(sortedSymbols[firstIndex[codeLength] + (int) offset]);
+				code = 0;
+				codeLength = 0;
+			} else if (codeLength == MAX_CODE_LENGTH) {
+				throw new IllegalArgumentException("Encoding contains a code which is not in this canonical code");
+			}
+		}
+
+		return decoded;
+	}
+
+	/**
+	 * Decode bits stored in ints, most significant bit first, into a
+	 * StringBuilder.
+	 *
+	 * @param src       The encoded bits
+	 * @param srcOff    The index of the int holding the first bit
+	 * @param bitLength The number of bits to decode
+	 * @param dst       The builder to append decoded characters to
+	 */
+	private void decode(int[] src, int srcOff, long bitLength, StringBuilder dst) {
+		long code = 0;
+		int codeLength = 0;
+
+		for (long index = 0; index < bitLength; index++) {
+			int currVal = src[(int) (index >>> 5) + srcOff] >>> (31 - (index & 31)) & 0x1;
+			code = code << 1 | currVal;
+			codeLength++;
+
+			long offset = code - firstCode[codeLength];
+			if (offset < count[codeLength]) {
+				dst.append(toChar(sortedSymbols[firstIndex[codeLength] + (int) offset]));
+				code = 0;
+				codeLength = 0;
+			} else if (codeLength == MAX_CODE_LENGTH) {
+				throw new IllegalArgumentException("Encoding contains a code which is not in this canonical code");
+			}
+		}
+	}
+
+	/**
+	 * Convert a decoded symbol to a character.
+	 *
+	 * @param symbol The symbol
+	 * @return The character of the symbol
+	 * @throws IllegalArgumentException If the symbol is {@link #MAX_SYMBOL}, which
+	 *                                  is not a character
+	 */
+	private static char toChar(int symbol) {
+		if (symbol > Character.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding contains symbol " + symbol + ", which is not a character");
+		}
+		return (char) symbol;
+	}
+
+	/**
+	 * Build a Huffman tree which assigns every character its canonical code, for
+	 * use with {@link Decode} or {@link TableDecoder}. Node frequencies are not
+	 * known from the code lengths and are set to 0.
+	 *
+	 * @return The root of the Huffman tree
+	 * @throws IllegalArgumentException If the code has a code for
+	 *                                  {@link #MAX_SYMBOL}, which a tree of
+	 *                                  characters cannot hold
+	 */
+	public HuffmanNode toTree() {
+		if (codeLength(MAX_SYMBOL) > 0) {
+			throw new IllegalArgumentException("Symbol " + MAX_SYMBOL + " is not a character, so it has no leaf");
+		}
+		HuffmanNode root = new HuffmanNode(0, null, null);
+
+		for (int i = 0; i < sortedSymbols.length; i++) {
+			int code = codes[sortedSymbols[i]];
+			HuffmanNode currNode = root;
+
+			// Follow, and create where needed, the interior nodes of the code
+			for (int bit = sortedLengths[i] - 1; bit > 0; bit--) {
+				HuffmanNode next = (code >>> bit & 0x1) == 0 ? currNode.getLeftChild() : currNode.getRightChild();
+				if (next == null) {
+					next = new HuffmanNode(0, null, null);
+					if ((code >>> bit & 0x1) == 0) {
+						currNode.setLeftChild(next);
+					} else {
+						currNode.setRightChild(next);
+					}
+				}
+				currNode = next;
+			}
+
+			HuffmanNode leaf = new HuffmanNode((char) sortedSymbols[i], 0);
+			if ((code & 0x1) == 0) {
+				currNode.setLeftChild(leaf);
+			} else {
+				currNode.setRightChild(leaf);
+			}
+		}
+
+		return root;
+	}
+}
@@ -0,0 +1,262 @@
+package model;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * The Huffman code of every character of a tree, stored as primitive code bits
+ * and code lengths indexed by the character itself.
+ *
+ * A CodeBook is never modified after it is built, so one instance may be
+ * shared by many threads. Building one walks the whole tree, so when one tree
+ * encodes many inputs, build its CodeBook once and pass it to the encode
+ * methods of {@link Encode} instead of the tree.
+ *
+ * @author Andrew Dennison
+ */
+public final class CodeBook {
+
+	/**
+	 * The longest code a CodeBook can hold.
+	 */
+	public static final int MAX_CODE_LENGTH = Long.SIZE;
+
+	// The code of each character, right aligned, and its length in bits
+	private final long[] codes;
+	private final byte[] lengths;
+	// True if the tree is one leaf, whose character is the last of the arrays
+	private final boolean singleLeaf;
+
+	/**
+	 * Create a CodeBook from code arrays indexed by character.
+	 *
+	 * @param codes      The code of each character
+	 * @param lengths    The code length of each character, or 0 for no code
+	 * @param singleLeaf True if the tree is a single leaf
+	 */
+	private CodeBook(long[] codes, byte[] lengths, boolean singleLeaf) {
+		this.codes = codes;
+		this.lengths = lengths;
+		this.singleLeaf = singleLeaf;
+	}
+
+	/**
+	 * Read the code of every leaf of a tree. A root which is itself a leaf gives
+	 * its character a code of length 0, as {@link Encode#encodeBits} does.
+	 *
+	 * @param root The root of the Huffman tree
+	 * @return The codes of the tree
+	 * @throws IllegalArgumentException If the tree has codes longer than
+	 *                                  {@link #MAX_CODE_LENGTH} bits
+	 */
+	public static CodeBook fromTree(HuffmanNode root) {
+		return fromTree(FlatHuffmanTree.fromTree(root));
+	}
+
+	/**
+	 * Read the code of every leaf of a flattened tree. A root which is itself a
+	 * leaf gives its character a code of length 0, as {@link Encode#encodeBits}
+	 * does.
+	 *
+	 * @param tree The Huffman tree
+	 * @return The codes of the tree
+	 * @throws IllegalArgumentException If the tree has codes longer than
+	 *                                  {@link #MAX_CODE_LENGTH} bits
+	 */
+	public static CodeBook fromTree(FlatHuffmanTree tree) {
+		int size = 0;
+		for (int i = 0; i < tree.getLeafCount(); i++) {
+			size = Math.max(size, tree.getData(~i) + 1);
+		}
+		long[] codes = new long[size];
+		byte[] lengths = new byte[size];
+
+		if (FlatHuffmanTree.isLeaf(tree.getRoot())) {
+			return new CodeBook(codes, lengths, true);
+		}
+
+		// Interior nodes are numbered after their parents, so one pass in order
+		// finds the code of every node
+		long[] nodeCodes = new long[tree.getInteriorCount()];
+		byte[] nodeLengths = new byte[tree.getInteriorCount()];
+		for (int node = 0; node < tree.getInteriorCount(); node++) {
+			if (nodeLengths[node] == MAX_CODE_LENGTH) {
+				throw new IllegalArgumentException("The tree has codes longer than " + MAX_CODE_LENGTH + " bits");
+			}
+
+			for (int bit = 0; bit < 2; bit++) {
+				int child = tree.getChild(node, bit);
+				long code = nodeCodes[node] << 1 | bit;
+				byte length = (byte) (nodeLengths[node] + 1);
+
+				if (FlatHuffmanTree.isLeaf(child)) {
+					codes[tree.getData(child)] = code;
+					lengths[tree.getData(child)] = length;
+				} else if (child != FlatHuffmanTree.NONE) {
+					nodeCodes[child] = code;
+					nodeLengths[child] = length;
+				}
+			}
+		}
+
+		return new CodeBook(codes, lengths, false);
+	}
+
+	/**
+	 * Determine if a character has a code. The character of a single leaf tree
+	 * has a code of length 0.
+	 *
+	 * @param c The character to look up
+	 * @return True if the character is a leaf of the tree
+	 */
+	public boolean contains(char c) {
+		if (c >= lengths.length) {
+			return false;
+		}
+		return lengths[c] != 0 || (singleLeaf && c == lengths.length - 1);
+	}
+
+	/**
+	 * Get the code length of a character.
+	 *
+	 * @param c The character to look up
+	 * @return The number of bits in its code, or 0 if it has no code
+	 */
+	public int codeLength(char c) {
+		return c < lengths.length ? lengths[c] : 0;
+	}
+
+	/**
+	 * Get the code of a character.
+	 *
+	 * @param c The character to look up
+	 * @return The code, right aligned, or 0 if it has no code
+	 */
+	public long code(char c) {
+		return c < codes.length ? codes[c] : 0;
+	}
+
+	/**
+	 * Find the number of bits needed to encode part of a sequence of characters.
+	 *
+	 * @param input The characters to measure
+	 * @param start The index of the first character
+	 * @param end   The index after the last character
+	 * @return The number of bits in the encoding
+	 * @throws IllegalArgumentException If a character has no code
+	 */
+	public long bitLength(CharSequence input, int start, int end) {
+		long length = 0;
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			int codeLength = c < lengths.length ? lengths[c] : 0;
+			if (codeLength == 0 && !contains(c)) {
+				throw new IllegalArgumentException("No code for character " + (int) c);
+			}
+			length += codeLength;
+		}
+		return length;
+	}
+
+	/**
+	 * Encode part of a sequence of characters into ints, most significant bit
+	 * first, starting at the first bit of dst[dstOff]. The last int written is
+	 * zero padded.
+	 *
+	 * @param input  The characters to encode
+	 * @param start  The index of the first character
+	 * @param end    The index after the last character
+	 * @param dst    The array to store the bits in
+	 * @param dstOff The index of the first int to store bits in
+	 * @return The number of bits written
+	 */
+	long encode(CharSequence input, int start, int end, int[] dst, int dstOff) {
+		// Bits waiting to be stored, right aligned; always fewer than 32
+		long pending = 0;
+		int pendingBits = 0;
+		int posInArr = dstOff;
+		long length = 0;
+
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			int codeLength = c < lengths.length ? lengths[c] : 0;
+			if (codeLength == 0 && !contains(c)) {
+				throw new IllegalArgumentException("No code for character " + (int) c);
+			}
+			long code = codes[c];
+			length += codeLength;
+
+			// Codes longer than 32 bits are stored in two parts
+			if (codeLength > Integer.SIZE) {
+				int highBits = codeLength - Integer.SIZE;
+				pending = pending << highBits | code >>> Integer.SIZE;
+				pendingBits += highBits;
+				if (pendingBits >= Integer.SIZE) {
+					pendingBits -= Integer.SIZE;
+					dst[posInArr++] = (int) (pending >>> pendingBits);
+				}
+				code &= 0xFFFFFFFFL;
+				codeLength = Integer.SIZE;
+			}
+
+			pending = pending << codeLength | code;
+			pendingBits += codeLength;
+			if (pendingBits >= Integer.SIZE) {
+				pendingBits -= Integer.SIZE;
+				dst[posInArr++] = (int) (pending >>> pendingBits);
+			}
+		}
+
+		if (pendingBits > 0) {
+			dst[posInArr] = (int) (pending << (Integer.SIZE - pendingBits));
+		}
+
+		return length;
+	}
+
+	/**
+	 * Encode part of a sequence of characters into longs, most significant bit
+	 * first, starting at the first bit of dst[dstOff]. Each long is written once,
+	 * and the last long written is zero padded.
+	 *
+	 * @param input  The characters to encode
+	 * @param start  The index of the first character
+	 * @param end    The index after the last character
+	 * @param dst    The array to store the bits in
+	 * @param dstOff The index of the first long to store bits in
+	 * @return The number of bits written
+	 */
+	long encode(CharSequence input, int start, int end, long[] dst, int dstOff) {
+		// Bits waiting to be stored, left aligned, and the room left beside them
+		long pending = 0;
+		int free = Long.SIZE;
+		int posInArr = dstOff;
+		long length = 0;
+
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			int codeLength = c < lengths.length ? lengths[c] : 0;
+			if (codeLength == 0 && !contains(c)) {
+				throw new IllegalArgumentException("No code for character " + (int) c);
+			}
+			long code = codes[c];
+			length += codeLength;
+
+			if (codeLength < free) {
+				pending |= code << (free - codeLength);
+				free -= codeLength;
+			} else {
+				// Fill the current long with the top of the code and start the next
+				int overflow = codeLength - free;
+				dst[posInArr++] = pending | code >>> overflow;
+				pending = overflow == 0 ? 0 : code << (Long.SIZE - overflow);
+				free = Long.SIZE - overflow;
+			}
+		}
+
+		if (free < Long.SIZE) {
+			dst[posInArr] = pending;
+		}
+
+		return length;
+	}
+}
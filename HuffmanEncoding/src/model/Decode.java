@@ -1,5 +1,9 @@
 package model;
 
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.ForkJoinPool;
+
 import model.PriorityQueue.HuffmanNode;
 
 /**
@@ -28,7 +32,7 @@ public class Decode {
 		char[] chars = encoding.toCharArray();
 		int index = 0;
 		HuffmanNode currNode = root;
-		String result = "";
+		StringBuilder result = new StringBuilder();
 
 		// For each character in the String
 		while (index < encoding.length()) {
@@ -38,10 +42,15 @@ public class Decode {
 			if (currentChar == '0') {
 				currNode = currNode.getLeftChild();
 
+				// If an invalid tree was submitted
+				if (currNode == null) {
+					return ERROR_MESSAGE;
+				}
+
 				// If the left child is a leaf, add the character associated with that node to
 				// the result
 				if (currNode.isLeaf()) {
-					result += currNode.getData();
+					result.append(currNode.getData());
 					currNode = root;
 				}
 			}
@@ -58,14 +67,14 @@ public class Decode {
 				// If the right child is a leaf, add the character associated with that node to
 				// the result
 				if (currNode.isLeaf()) {
-					result += currNode.getData();
+					result.append(currNode.getData());
 					currNode = root;
 				}
 			}
 
 			index++;
 		}
-		return result;
+		return result.toString();
 	}
 
 	/**
@@ -83,7 +92,7 @@ public class Decode {
 		int length = encoding[0];
 		int index = 0;
 		HuffmanNode currNode = root;
-		String result = "";
+		StringBuilder result = new StringBuilder();
 
 		while (index < length) {
 			// How far into the Integer array we are currrently
@@ -96,10 +105,15 @@ public class Decode {
 			if (currVal == 0) {
 				currNode = currNode.getLeftChild();
 
+				// If an invalid tree was submitted
+				if (currNode == null) {
+					return ERROR_MESSAGE;
+				}
+
 				// If the left child is a leaf, add the character associated with that node to
 				// the result
 				if (currNode.isLeaf()) {
-					result += currNode.getData();
+					result.append(currNode.getData());
 					currNode = root;
 				}
 			}
@@ -108,10 +122,15 @@ public class Decode {
 			else {
 				currNode = currNode.getRightChild();
 
+				// If an invalid tree was submitted
+				if (currNode == null) {
+					return ERROR_MESSAGE;
+				}
+
 				// If the right child is a leaf, add the character associated with that node to
 				// the result
 				if (currNode.isLeaf()) {
-					result += currNode.getData();
+					result.append(currNode.getData());
 					currNode = root;
 				}
 			}
@@ -119,6 +138,257 @@ public class Decode {
 			index++;
 		}
 
-		return result;
+		return result.toString();
+	}
+
+	/**
+	 * Decode a String of 1s and 0s by walking a flattened tree, which reads its
+	 * nodes from arrays rather than following references between HuffmanNodes.
+	 * 
+	 * @param encoding String representation of 0s and 1s for the encoded data
+	 * @param tree     The flattened Huffman tree
+	 * @return The decoded String, or {@link #ERROR_MESSAGE} if the tree cannot
+	 *         decode the input
+	 */
+	public static String decode(String encoding, FlatHuffmanTree tree) {
+		int root = tree.getRoot();
+		if (root == FlatHuffmanTree.NONE || (root < 0 && !encoding.isEmpty())) {
+			return ERROR_MESSAGE;
+		}
+
+		StringBuilder result = new StringBuilder();
+		int currNode = root;
+		for (int index = 0; index < encoding.length(); index++) {
+			currNode = tree.getChild(currNode, encoding.charAt(index) == '0' ? 0 : 1);
+
+			// A negative reference is a leaf, or a missing node in an invalid tree
+			if (currNode < 0) {
+				if (currNode == FlatHuffmanTree.NONE) {
+					return ERROR_MESSAGE;
+				}
+				result.append(tree.getData(currNode));
+				currNode = root;
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Decode bits in the format of {@link Encode#encodeBits(String, HuffmanNode)}
+	 * by walking a flattened tree.
+	 * 
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param tree     The flattened Huffman tree
+	 * @return The decoded String, or {@link #ERROR_MESSAGE} if the tree cannot
+	 *         decode the input
+	 */
+	public static String decode(int[] encoding, FlatHuffmanTree tree) {
+		int root = tree.getRoot();
+		int length = encoding[0];
+		if (root == FlatHuffmanTree.NONE || (root < 0 && length > 0)) {
+			return ERROR_MESSAGE;
+		}
+
+		StringBuilder result = new StringBuilder();
+		int currNode = root;
+		for (int index = 0; index < length; index++) {
+			currNode = tree.getChild(currNode, encoding[(index >>> 5) + 1] >>> (31 - (index & 31)) & 0x1);
+
+			if (currNode < 0) {
+				if (currNode == FlatHuffmanTree.NONE) {
+					return ERROR_MESSAGE;
+				}
+				result.append(tree.getData(currNode));
+				currNode = root;
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Decode a known number of characters from bits in the format of
+	 * {@link Encode#encodeBits(String, HuffmanNode)}. The result is sized exactly
+	 * from numChars, such as the length of the String which was encoded.
+	 * 
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param root     The root of the huffman tree
+	 * @param numChars The number of characters encoded
+	 * @return The decoded String
+	 */
+	public static String decode(int[] encoding, HuffmanNode root, int numChars) {
+		if (numChars < 0) {
+			throw new IllegalArgumentException("numChars must not be negative");
+		}
+
+		char[] result = new char[numChars];
+		new TableDecoder(root).decode(encoding, Integer.SIZE, Integer.SIZE + (encoding[0] & 0xFFFFFFFFL), result, 0,
+				numChars);
+		return new String(result);
+	}
+
+	/**
+	 * Decode bits in the format of {@link Encode#encodeBits(String, HuffmanNode)}
+	 * into a pre-sized array instead of a String.
+	 * 
+	 * To decode many encodings with the same tree, build a {@link TableDecoder}
+	 * once and call its decode methods instead.
+	 * 
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param root     The root of the huffman tree
+	 * @param dst      The array to store decoded characters in
+	 * @param dstOff   The index to store the first character at
+	 * @return The number of characters decoded
+	 */
+	public static int decode(int[] encoding, HuffmanNode root, char[] dst, int dstOff) {
+		return new TableDecoder(root).decode(encoding, dst, dstOff);
+	}
+
+	/**
+	 * Decode bits in the format of {@link Encode#encodeBits(String, HuffmanNode)}
+	 * into a caller-supplied buffer, advancing its position.
+	 * 
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param root     The root of the huffman tree
+	 * @param dst      The buffer to store decoded characters in
+	 */
+	public static void decode(int[] encoding, HuffmanNode root, CharBuffer dst) {
+		new TableDecoder(root).decode(encoding, dst);
+	}
+
+	/**
+	 * Decode bits in the format of {@link Encode#encodeBits(String, HuffmanNode)}
+	 * into any sink of characters, such as a StringBuilder or Writer.
+	 * 
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param root     The root of the huffman tree
+	 * @param dst      The sink to append decoded characters to
+	 * @throws IOException if the sink cannot be appended to
+	 */
+	public static void decode(int[] encoding, HuffmanNode root, Appendable dst) throws IOException {
+		new TableDecoder(root).decode(encoding, dst);
+	}
+
+	/**
+	 * Decode bits created by {@link Encode#encodeWords(String, HuffmanNode)}. The
+	 * result is sized exactly from the number of characters encoded.
+	 * 
+	 * @param encoding The encoded bits
+	 * @param root     The root of the huffman tree
+	 * @return The decoded String
+	 */
+	public static String decode(EncodedBits encoding, HuffmanNode root) {
+		char[] result = new char[encoding.getLength()];
+		new TableDecoder(root).decode(encoding.getWords(), 0, encoding.getBitLength(), result, 0, result.length);
+		return new String(result);
+	}
+
+	/**
+	 * Decode every block of an {@link EncodedBlocks} in parallel on the common
+	 * ForkJoinPool.
+	 * 
+	 * @param encoding The encoded blocks
+	 * @param root     The root of the huffman tree the blocks were encoded with
+	 * @return The decoded String
+	 */
+	public static String decode(EncodedBlocks encoding, HuffmanNode root) {
+		return decode(encoding, root, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Decode every block of an {@link EncodedBlocks} in parallel. Each block is
+	 * decoded straight into its own range of the result.
+	 * 
+	 * @param encoding The encoded blocks
+	 * @param root     The root of the huffman tree the blocks were encoded with
+	 * @param pool     The pool to decode blocks on
+	 * @return The decoded String
+	 */
+	public static String decode(EncodedBlocks encoding, HuffmanNode root, ForkJoinPool pool) {
+		TableDecoder decoder = new TableDecoder(root);
+		char[] result = new char[encoding.getLength()];
+		int[] bits = encoding.getBits();
+
+		pool.invoke(new BlockTask(0, encoding.getBlockCount(), block -> {
+			long start = encoding.getBlockOffset(block);
+			decoder.decode(bits, start, start + encoding.getBlockLength(block), result, block * encoding.getBlockSize(),
+					encoding.getBlockChars(block));
+		}));
+
+		return new String(result);
+	}
+
+	/**
+	 * Decode characters from..to of an encoding created by
+	 * {@link Encode#encodeBits(String, HuffmanNode)}, starting at the nearest
+	 * sync point of its {@link SeekIndex} instead of the first bit.
+	 * 
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param root     The root of the huffman tree
+	 * @param index    The seek index of the encoding
+	 * @param from     The index of the first character to decode
+	 * @param to       The index after the last character to decode
+	 * @return The decoded characters from..to
+	 */
+	public static String decode(int[] encoding, HuffmanNode root, SeekIndex index, int from, int to) {
+		checkRange(from, to, index.getLength());
+		if (from == to) {
+			return "";
+		}
+
+		int point = from / index.getInterval();
+		int first = index.getSymbolCount(point);
+		char[] result = new char[to - first];
+
+		// Bits begin after the length header
+		long start = Integer.SIZE + index.getBitOffset(point);
+		new TableDecoder(root).decode(encoding, start, Integer.SIZE + (encoding[0] & 0xFFFFFFFFL), result, 0, to - first);
+
+		return new String(result, from - first, to - from);
+	}
+
+	/**
+	 * Decode characters from..to of an {@link EncodedBlocks}, decoding only the
+	 * blocks which hold them.
+	 * 
+	 * @param encoding The encoded blocks
+	 * @param root     The root of the huffman tree the blocks were encoded with
+	 * @param from     The index of the first character to decode
+	 * @param to       The index after the last character to decode
+	 * @return The decoded characters from..to
+	 */
+	public static String decode(EncodedBlocks encoding, HuffmanNode root, int from, int to) {
+		checkRange(from, to, encoding.getLength());
+		if (from == to) {
+			return "";
+		}
+
+		TableDecoder decoder = new TableDecoder(root);
+		int blockSize = encoding.getBlockSize();
+		int firstBlock = from / blockSize;
+		int lastBlock = (to - 1) / blockSize;
+		int first = firstBlock * blockSize;
+		char[] result = new char[to - first];
+
+		for (int block = firstBlock; block <= lastBlock; block++) {
+			long start = encoding.getBlockOffset(block);
+			int blockStart = block * blockSize;
+			decoder.decode(encoding.getBits(), start, start + encoding.getBlockLength(block), result, blockStart - first,
+					Math.min(encoding.getBlockChars(block), to - blockStart));
+		}
+
+		return new String(result, from - first, to - from);
+	}
+
+	/**
+	 * Check that from..to is a valid range of characters.
+	 * 
+	 * @param from   The index of the first character
+	 * @param to     The index after the last character
+	 * @param length The number of characters available
+	 */
+	private static void checkRange(int from, int to, int length) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException("Range " + from + ".." + to + " is outside of 0.." + length);
+		}
 	}
 }
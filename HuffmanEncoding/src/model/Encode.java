@@ -1,9 +1,15 @@
 package model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import model.PriorityQueue.PriorityQueue;
 import model.PriorityQueue.HuffmanNode;
 
-import model.HashTable.*;
+import model.HashTable.CharIntMap;
 
 /**
  * Provides Huffman Encoding functionality for any String
@@ -14,6 +20,17 @@ public class Encode {
 
 	public static final String ERROR_MESSAGE = "";
 
+	/**
+	 * The number of characters in each block of {@link #encodeBlocks} when no
+	 * block size is given.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+	/**
+	 * The largest number of characters allowed in one block.
+	 */
+	public static final int MAX_BLOCK_SIZE = 1 << 24;
+
 	/**
 	 * Encode a given input string using Huffman encoding.
 	 * 
@@ -26,24 +43,55 @@ public class Encode {
 		}
 
 		// Generate Huffman codes
-		HashTable<Character, String> codes = generateHuffmanCodes(root);
+		CharIntMap index = new CharIntMap();
+		ArrayList<String> codes = new ArrayList<>();
+		generateCodes(root, new char[16], 0, index, codes);
 
 		// Encode the input string
 		StringBuilder encodedString = new StringBuilder();
-		for (char c : input.toCharArray()) {
-			encodedString.append(codes.get(c));
+		for (int i = 0; i < input.length(); i++) {
+			int code = index.get(input.charAt(i), -1);
+			// A character with no code appends "null", as the HashTable lookup did
+			encodedString.append(code < 0 ? null : codes.get(code));
 		}
 
 		return encodedString.toString();
 	}
 
+	/**
+	 * Encode a given input string using the codes of a tree, as a String of '0'
+	 * and '1' characters.
+	 * 
+	 * @param input The input string to be encoded
+	 * @param codes The codes of the HuffmanTree encoding
+	 * @return The encoded string using Huffman codes
+	 */
+	public static String encodeString(String input, CodeBook codes) {
+		long length = codes.bitLength(input, 0, input.length());
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding is longer than " + Integer.MAX_VALUE + " bits, use encodeWords");
+		}
+
+		char[] encoded = new char[(int) length];
+		int pos = 0;
+		for (int i = 0; i < input.length(); i++) {
+			char c = input.charAt(i);
+			long code = codes.code(c);
+			for (int bit = codes.codeLength(c) - 1; bit >= 0; bit--) {
+				encoded[pos++] = (code >>> bit & 1) == 0 ? '0' : '1';
+			}
+		}
+
+		return new String(encoded);
+	}
+
 	/**
 	 * Given a string and a HuffmanNode tree, produce an array of bits representing
-	 * its Huffman encoding.
+	 * its Huffman encoding. The array is sized exactly before any bits are written.
 	 * 
 	 * @param input The string to convert to bits
 	 * @param root  The HuffmanTree encoding
-	 * @return An integer array of {numChars, bits, bits, bits...}
+	 * @return An integer array of {numBits, bits, bits, bits...}
 	 */
 	public static int[] encodeBits(String input, HuffmanNode root) {
 		if (root == null) {
@@ -51,153 +99,545 @@ public class Encode {
 		}
 		// 1101 000...0
 
-		int[] bits = new int[2];
-		// The number of characters encoded
-		int length = 0;
-
 		// Generate Huffman codes
-		HashTable<Character, String> codes = generateHuffmanCodes(root);
-		
-		// The 32 bits we are currently encoding.
-		int currBits = 0;
-		// The index we can next insert at.
-		int outputIndex = Integer.SIZE - 1;
-		// The index in the array of ints we are currently working at.
-		int posInArr = 1;
-
-		/*
-		 * For each character in our given input string, convert the char to its
-		 * HuffmanEncoding as a String. Then, convert the String representation of the
-		 * HuffmanEncoding to a series of bits, and mask them into an Integer.
-		 * 
-		 * When we run out of bit space in the current integer, add more ints to the
-		 * array of Integers.
-		 */
-		for (char c : input.toCharArray()) {
-			String code = codes.get(c);
-			int bitIndex = 0;
-			length += code.length();
-
-			while (bitIndex < code.length()) {
-				// Resize the array if necessary
-				if (outputIndex < 0) {
-					bits[posInArr] = currBits; // Store the current int in the array
-					posInArr++; // Move to the next int in the array
-					outputIndex = Integer.SIZE - 1; // Reset our location in the current int
-					currBits = 0; // Reset the current int
-					bits = resizeArray(bits, bits.length + 1); // Resize the array
-				}
-
-				// Mask in the next bit
-				int currCodeBit = Character.getNumericValue(code.charAt(bitIndex));
-				currBits = currBits | currCodeBit << outputIndex;
-
-				bitIndex++;
-				outputIndex--;
-			}
+		return encodeBits(input, CodeBook.fromTree(root));
+	}
+
+	/**
+	 * Given a string and a flattened tree, produce an array of bits representing
+	 * its Huffman encoding, in the same format as
+	 * {@link #encodeBits(String, HuffmanNode)}.
+	 * 
+	 * @param input The string to convert to bits
+	 * @param tree  The flattened HuffmanTree encoding
+	 * @return An integer array of {numBits, bits, bits, bits...}
+	 */
+	public static int[] encodeBits(String input, FlatHuffmanTree tree) {
+		if (tree.getRoot() == FlatHuffmanTree.NONE) {
+			return new int[] { 0, 0 };
 		}
+		return encodeBits(input, CodeBook.fromTree(tree));
+	}
 
-		// Store the result
-		bits[posInArr] = currBits;
-		bits[0] = length;
+	/**
+	 * Encode a string with the codes of a tree into an exactly sized array of
+	 * {numBits, bits, bits, bits...}, in the same format as
+	 * {@link #encodeBits(String, HuffmanNode)}.
+	 * 
+	 * @param input The string to convert to bits
+	 * @param codes The codes of the HuffmanTree encoding
+	 * @return An integer array of {numBits, bits, bits, bits...}
+	 */
+	public static int[] encodeBits(String input, CodeBook codes) {
+		// The number of bits encoded, which must fit in the first int
+		long length = codes.bitLength(input, 0, input.length());
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding is longer than " + Integer.MAX_VALUE + " bits, use encodeWords");
+		}
+
+		int[] bits = new int[Math.max(1, (int) ((length + Integer.SIZE - 1) / Integer.SIZE)) + 1];
+		codes.encode(input, 0, input.length(), bits, 1);
+		bits[0] = (int) length;
 		return bits;
 	}
 
 	/**
-	 * Resize an array of integers to a given size.
+	 * Given a string and a HuffmanNode tree, produce its Huffman encoding as longs
+	 * along with its exact bit length. The output is sized exactly before any bits
+	 * are written, and each long is written once.
 	 * 
-	 * @param arr     Array to resize
-	 * @param newSize Desired size to resize arr to.
-	 * @return The resized array with elements copied to the new array.
+	 * @param input The string to convert to bits
+	 * @param root  The HuffmanTree encoding
+	 * @return The encoded bits
 	 */
-	private static int[] resizeArray(int[] arr, int newSize) {
-		int[] newBits = new int[newSize];
-		for (int i = 0; i < arr.length; i++) {
-			newBits[i] = arr[i];
+	public static EncodedBits encodeWords(String input, HuffmanNode root) {
+		if (root == null) {
+			throw new IllegalArgumentException("Please create a tree before trying to encode!");
 		}
 
-		return newBits;
+		return encodeWords(input, CodeBook.fromTree(root));
+	}
+
+	/**
+	 * Encode a string with the codes of a tree as longs, along with its exact bit
+	 * length.
+	 * 
+	 * @param input The string to convert to bits
+	 * @param codes The codes of the HuffmanTree encoding
+	 * @return The encoded bits
+	 */
+	public static EncodedBits encodeWords(String input, CodeBook codes) {
+		long length = codes.bitLength(input, 0, input.length());
+		long[] words = new long[EncodedBits.wordsFor(length)];
+		codes.encode(input, 0, input.length(), words, 0);
+
+		return new EncodedBits(words, length, input.length());
 	}
 
 	/**
-	 * Calculate frequencies of characters in the input string.
+	 * Encode a sequence of characters into a caller-supplied array of longs, most
+	 * significant bit first. The array must hold at least
+	 * {@code (encodedLength + 63) / 64} longs.
 	 * 
-	 * @param input The input string
-	 * @return A map of character frequencies
+	 * @param input The characters to convert to bits
+	 * @param root  The HuffmanTree encoding
+	 * @param dst   The array to store the bits in
+	 * @return The exact number of bits written
 	 */
-	private static HashTable<Character, Integer> calculateFrequencies(String input) {
-		HashTable<Character, Integer> frequencyMap = new HashTable<>();
-		for (char c : input.toCharArray()) {
-			frequencyMap.put(c, frequencyMap.getOrDefault(c, 0) + 1);
+	public static long encodeWords(CharSequence input, HuffmanNode root, long[] dst) {
+		if (root == null) {
+			throw new IllegalArgumentException("Please create a tree before trying to encode!");
 		}
-		return frequencyMap;
+
+		return encodeWords(input, CodeBook.fromTree(root), dst);
+	}
+
+	/**
+	 * Encode a sequence of characters with the codes of a tree into a
+	 * caller-supplied array of longs, most significant bit first.
+	 * 
+	 * @param input The characters to convert to bits
+	 * @param codes The codes of the HuffmanTree encoding
+	 * @param dst   The array to store the bits in
+	 * @return The exact number of bits written
+	 */
+	public static long encodeWords(CharSequence input, CodeBook codes, long[] dst) {
+		long length = codes.bitLength(input, 0, input.length());
+		if (EncodedBits.wordsFor(length) > dst.length) {
+			throw new IllegalArgumentException("The encoding needs " + EncodedBits.wordsFor(length) + " longs, but only "
+					+ dst.length + " were given");
+		}
+
+		return codes.encode(input, 0, input.length(), dst, 0);
+	}
+
+	/**
+	 * Encode many messages with one tree built from the frequencies of all of
+	 * them together. See {@link #encodeBatch(List, HuffmanNode)}.
+	 * 
+	 * @param messages The messages to encode
+	 * @return The encoded messages and their tree
+	 */
+	public static EncodedBatch encodeBatch(List<? extends CharSequence> messages) {
+		StringBuilder joined = new StringBuilder();
+		int[] charOffsets = join(messages, joined);
+		return encodeBatch(joined, charOffsets, buildHuffmanTree(FrequencyTable.count(joined)));
+	}
+
+	/**
+	 * Encode many messages with the same tree into one contiguous array of bits,
+	 * recording where each message starts. The messages are encoded in one pass,
+	 * as if they were a single input, so each message adds only its offsets to
+	 * the cost of the batch.
+	 * 
+	 * @param messages The messages to encode
+	 * @param root     The HuffmanTree encoding
+	 * @return The encoded messages
+	 */
+	public static EncodedBatch encodeBatch(List<? extends CharSequence> messages, HuffmanNode root) {
+		if (root == null) {
+			throw new IllegalArgumentException("Please create a tree before trying to encode!");
+		}
+
+		StringBuilder joined = new StringBuilder();
+		int[] charOffsets = join(messages, joined);
+		return encodeBatch(joined, charOffsets, root);
+	}
+
+	/**
+	 * Append every message to a builder, recording where each one starts.
+	 * 
+	 * @param messages The messages to join
+	 * @param joined   The builder to append them to
+	 * @return The offset of each message in joined, followed by its length
+	 */
+	private static int[] join(List<? extends CharSequence> messages, StringBuilder joined) {
+		int[] charOffsets = new int[messages.size() + 1];
+		for (int i = 0; i < messages.size(); i++) {
+			CharSequence message = messages.get(i);
+			if (joined.length() > Integer.MAX_VALUE - message.length()) {
+				throw new IllegalArgumentException("The batch holds more than " + Integer.MAX_VALUE + " characters");
+			}
+			joined.append(message);
+			charOffsets[i + 1] = joined.length();
+		}
+		return charOffsets;
+	}
+
+	/**
+	 * Encode joined messages in one pass, after measuring each message to find
+	 * its bit offset.
+	 * 
+	 * @param joined      Every message, one after another
+	 * @param charOffsets The offset of each message in joined, followed by its
+	 *                    length
+	 * @param root        The HuffmanTree encoding, or null if joined is empty
+	 * @return The encoded messages
+	 */
+	private static EncodedBatch encodeBatch(CharSequence joined, int[] charOffsets, HuffmanNode root) {
+		long[] bitOffsets = new long[charOffsets.length];
+		if (root == null) {
+			return new EncodedBatch(null, new int[0], bitOffsets, charOffsets);
+		}
+
+		CodeBook codes = CodeBook.fromTree(root);
+		for (int i = 0; i < charOffsets.length - 1; i++) {
+			bitOffsets[i + 1] = bitOffsets[i] + codes.bitLength(joined, charOffsets[i], charOffsets[i + 1]);
+		}
+
+		long words = (bitOffsets[bitOffsets.length - 1] + Integer.SIZE - 1) / Integer.SIZE;
+		if (words > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding is longer than " + Integer.MAX_VALUE + " ints");
+		}
+		int[] bits = new int[(int) words];
+		codes.encode(joined, 0, joined.length(), bits, 0);
+
+		return new EncodedBatch(root, bits, bitOffsets, charOffsets);
+	}
+
+	/**
+	 * Find the exact number of bits in the encoding of an input from its
+	 * character frequencies, as the sum of frequency times code length.
+	 * 
+	 * @param frequencies The frequency of each character of the input
+	 * @param root        The HuffmanTree encoding
+	 * @return The number of bits in the encoding
+	 * @throws ArithmeticException If the length is larger than Long.MAX_VALUE
+	 */
+	public static long encodedLength(FrequencyTable frequencies, HuffmanNode root) {
+		if (root == null) {
+			throw new IllegalArgumentException("Please create a tree before trying to encode!");
+		}
+
+		CodeBook codes = CodeBook.fromTree(root);
+		long length = 0;
+		for (int i = 0; i < frequencies.size(); i++) {
+			char c = frequencies.symbol(i);
+			if (!codes.contains(c)) {
+				throw new IllegalArgumentException("No code for character " + (int) c);
+			}
+			length = Math.addExact(length, Math.multiplyExact(frequencies.frequency(i), codes.codeLength(c)));
+		}
+		return length;
+	}
+
+	/**
+	 * Build a {@link SeekIndex} for the encoding of a string with sync points
+	 * every {@link SeekIndex#DEFAULT_INTERVAL} characters.
+	 * 
+	 * @param input The string which was encoded
+	 * @param root  The HuffmanTree encoding
+	 * @return The seek index for encodeBits(input, root)
+	 */
+	public static SeekIndex buildSeekIndex(String input, HuffmanNode root) {
+		return buildSeekIndex(input, root, SeekIndex.DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Build a {@link SeekIndex} for the encoding of a string, recording the bit
+	 * offset of every interval-th character. Only code lengths are needed, so
+	 * nothing is encoded.
+	 * 
+	 * @param input    The string which was encoded
+	 * @param root     The HuffmanTree encoding
+	 * @param interval The number of characters between sync points
+	 * @return The seek index for encodeBits(input, root)
+	 */
+	public static SeekIndex buildSeekIndex(String input, HuffmanNode root, int interval) {
+		if (root == null) {
+			throw new IllegalArgumentException("Please create a tree before trying to encode!");
+		}
+		if (interval < 1) {
+			throw new IllegalArgumentException("The interval must be positive: " + interval);
+		}
+
+		CodeBook codes = CodeBook.fromTree(root);
+		int length = input.length();
+		long[] offsets = new long[(length + interval - 1) / interval];
+
+		long offset = 0;
+		for (int point = 0; point < offsets.length; point++) {
+			offsets[point] = offset;
+			int start = point * interval;
+			offset += codes.bitLength(input, start, Math.min(length, start + interval));
+		}
+
+		return new SeekIndex(interval, length, offsets);
+	}
+
+	/**
+	 * Split a string into blocks of {@link #DEFAULT_BLOCK_SIZE} characters and
+	 * encode the blocks in parallel on the common ForkJoinPool.
+	 * 
+	 * @param input The string to convert to bits
+	 * @param root  The HuffmanTree encoding
+	 * @return The encoded blocks
+	 */
+	public static EncodedBlocks encodeBlocks(String input, HuffmanNode root) {
+		return encodeBlocks(input, root, DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Split a string into fixed-size blocks and encode the blocks in parallel.
+	 * Every block is encoded with the codes of the same tree and starts on an int
+	 * boundary, so blocks can also be decoded independently.
+	 * 
+	 * @param input     The string to convert to bits
+	 * @param root      The HuffmanTree encoding
+	 * @param blockSize The number of characters in each block
+	 * @param pool      The pool to encode blocks on
+	 * @return The encoded blocks
+	 */
+	public static EncodedBlocks encodeBlocks(String input, HuffmanNode root, int blockSize, ForkJoinPool pool) {
+		if (root == null) {
+			throw new IllegalArgumentException("Please create a tree before trying to encode!");
+		}
+		if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException("The block size must be between 1 and " + MAX_BLOCK_SIZE);
+		}
+
+		CodeBook codes = CodeBook.fromTree(root);
+		int length = input.length();
+		int blocks = (length + blockSize - 1) / blockSize;
+
+		// Measure every block first so each one knows where to write its bits
+		int[] blockLengths = new int[blocks];
+		pool.invoke(new BlockTask(0, blocks, block -> {
+			int start = block * blockSize;
+			blockLengths[block] = (int) codes.bitLength(input, start, Math.min(length, start + blockSize));
+		}));
+
+		long[] blockOffsets = new long[blocks];
+		long words = 0;
+		for (int block = 0; block < blocks; block++) {
+			blockOffsets[block] = words * Integer.SIZE;
+			words += (blockLengths[block] + Integer.SIZE - 1) / Integer.SIZE;
+		}
+		if (words > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding is longer than " + Integer.MAX_VALUE + " ints");
+		}
+
+		// Blocks never share an int, so they can be written at the same time
+		int[] bits = new int[(int) words];
+		pool.invoke(new BlockTask(0, blocks, block -> {
+			int start = block * blockSize;
+			codes.encode(input, start, Math.min(length, start + blockSize), bits, (int) (blockOffsets[block] / Integer.SIZE));
+		}));
+
+		return new EncodedBlocks(blockSize, length, bits, blockOffsets, blockLengths);
 	}
 
 	/**
 	 * Given a string, determine the frequencies of each character and store it in a
-	 * huffman tree.
+	 * huffman tree. Inputs of at least
+	 * {@link FrequencyTable#DEFAULT_PARALLEL_THRESHOLD} characters are counted in
+	 * parallel; {@link #buildHuffmanTreeParallel(String, int)} takes a different
+	 * threshold.
 	 * 
 	 * @param input String to form a tree out of.
 	 * @return The root of the huffman tree.
 	 */
 	public static HuffmanNode buildHuffmanTree(String input) {
-		HashTable<Character, Integer> frequencyMap = calculateFrequencies(input);
+		return buildHuffmanTree(FrequencyTable.count(input));
+	}
 
-		PriorityQueue queue = new PriorityQueue(frequencyMap.size());
+	/**
+	 * Build a huffman tree like {@link #buildHuffmanTree(String)}, counting the
+	 * frequencies in parallel on the common ForkJoinPool if the input is at least
+	 * parallelThreshold characters long. The tree is the same either way.
+	 * 
+	 * @param input             String to form a tree out of.
+	 * @param parallelThreshold The smallest input length to count in parallel
+	 * @return The root of the huffman tree.
+	 * @see FrequencyTable#count(CharSequence, int)
+	 */
+	public static HuffmanNode buildHuffmanTreeParallel(String input, int parallelThreshold) {
+		return buildHuffmanTree(FrequencyTable.count(input, parallelThreshold));
+	}
 
-		// Iterate over each key-value pair in frequency map
-		for (char c : frequencyMap.keySet()) {
-			Integer frequency = frequencyMap.get(c);
-			HuffmanNode node = new HuffmanNode(c, frequency);
+	/**
+	 * Build a huffman tree from frequencies which have already been counted.
+	 * 
+	 * @param frequencies The frequency of each character
+	 * @return The root of the huffman tree.
+	 */
+	public static HuffmanNode buildHuffmanTree(FrequencyTable frequencies) {
+		return buildHuffmanTree(frequencies.symbols(), frequencies.frequencies(), frequencies.size());
+	}
 
-			queue.insert(node);
-		}
+	/**
+	 * Given a string, build a huffman tree which depends only on the frequencies
+	 * of its characters. See {@link #buildDeterministicHuffmanTree(FrequencyTable)}.
+	 * 
+	 * @param input String to form a tree out of.
+	 * @return The root of the huffman tree.
+	 */
+	public static HuffmanNode buildDeterministicHuffmanTree(String input) {
+		return buildDeterministicHuffmanTree(FrequencyTable.count(input));
+	}
 
-		// Build the Huffman tree by combining nodes from the priority queue
-		while (queue.size() > 1) {
-			HuffmanNode left = queue.popMin();
-			HuffmanNode right = queue.popMin();
-			HuffmanNode parent = new HuffmanNode('\0', left.getFrequency() + right.getFrequency());
+	/**
+	 * Build a huffman tree with the heap ordered by
+	 * {@link HuffmanNode#DETERMINISTIC_ORDER}, so equal frequencies are broken by
+	 * character and then by the order nodes were merged, never by the order of
+	 * the table. The same frequencies give the same tree, and so byte-identical
+	 * encodings, on every run and JVM. The tree is the same as
+	 * {@link #buildHuffmanTreeLinear(FrequencyTable)}.
+	 * 
+	 * @param frequencies The frequency of each character
+	 * @return The root of the huffman tree.
+	 */
+	public static HuffmanNode buildDeterministicHuffmanTree(FrequencyTable frequencies) {
+		return buildHuffmanTree(frequencies.symbols(), frequencies.frequencies(), frequencies.size(),
+				HuffmanNode.DETERMINISTIC_ORDER);
+	}
+
+	/**
+	 * Given a string, build a huffman tree in linear time after sorting its
+	 * characters once. See {@link #buildHuffmanTreeLinear(FrequencyTable)}.
+	 * 
+	 * @param input String to form a tree out of.
+	 * @return The root of the huffman tree.
+	 */
+	public static HuffmanNode buildHuffmanTreeLinear(String input) {
+		return buildHuffmanTreeLinear(FrequencyTable.count(input));
+	}
+
+	/**
+	 * Build a huffman tree with two queues instead of a heap: one of leaves sorted
+	 * by frequency, and one of merged nodes in the order they were made. After
+	 * the sort, each merge takes constant time.
+	 * 
+	 * The encoded length is the same as {@link #buildHuffmanTree(FrequencyTable)},
+	 * but the tree does not depend on the order of the table. Equal frequencies
+	 * are broken by character, and a leaf is taken before a merged node of the
+	 * same frequency, so the same frequencies always give the same tree.
+	 * 
+	 * @param frequencies The frequency of each character
+	 * @return The root of the huffman tree.
+	 */
+	public static HuffmanNode buildHuffmanTreeLinear(FrequencyTable frequencies) {
+		return TwoQueueTree.build(frequencies.symbols(), frequencies.frequencies(), frequencies.size());
+	}
+
+	/**
+	 * Given a string, build a huffman tree whose codes are no longer than
+	 * maxCodeLength bits.
+	 * 
+	 * @param input         String to form a tree out of.
+	 * @param maxCodeLength The longest code allowed
+	 * @return The root of the huffman tree.
+	 */
+	public static HuffmanNode buildHuffmanTree(String input, int maxCodeLength) {
+		return buildHuffmanTree(FrequencyTable.count(input), maxCodeLength);
+	}
 
-			parent.setLeftChild(left);
-			parent.setRightChild(right);
-			queue.insert(parent);
+	/**
+	 * Build a huffman tree whose codes are no longer than maxCodeLength bits.
+	 * 
+	 * If the tree of {@link #buildHuffmanTree(FrequencyTable)} already fits, it is
+	 * returned. Otherwise, the code lengths are chosen by the package-merge
+	 * algorithm, which gives the smallest encoding possible under the limit, and
+	 * the tree assigns them canonically. The cost of the limit can be measured by
+	 * comparing {@link #encodedLength} of both trees.
+	 * 
+	 * @param frequencies   The frequency of each character
+	 * @param maxCodeLength The longest code allowed, such as 11, 15 or 24
+	 * @return The root of the huffman tree.
+	 */
+	public static HuffmanNode buildHuffmanTree(FrequencyTable frequencies, int maxCodeLength) {
+		if (maxCodeLength < 1) {
+			throw new IllegalArgumentException("maxCodeLength must be at least 1");
 		}
 
-		// Return the root node of the Huffman tree
-		return queue.popMin();
+		HuffmanNode root = buildHuffmanTree(frequencies);
+		if (root == null || FlatHuffmanTree.fromTree(root).getDepth() <= maxCodeLength) {
+			return root;
+		}
+
+		int[] lengths = PackageMerge.codeLengths(frequencies.symbols(), frequencies.frequencies(), frequencies.size(),
+				maxCodeLength);
+		return PackageMerge.buildTree(frequencies.symbols(), frequencies.frequencies(), lengths, frequencies.size());
+	}
+
+	/**
+	 * Build a huffman tree from characters and their frequencies. Leaves are
+	 * inserted into the queue in the order given.
+	 * 
+	 * @param symbols     The characters to form leaves from
+	 * @param frequencies The frequency of each character
+	 * @param size        The number of characters to use from the arrays
+	 * @return The root of the huffman tree, or null if size is 0. The root is
+	 *         always an interior node, so a single character still gets a
+	 *         1 bit code.
+	 */
+	static HuffmanNode buildHuffmanTree(char[] symbols, long[] frequencies, int size) {
+		return buildHuffmanTree(symbols, frequencies, size, null);
 	}
 
 	/**
-	 * Generate Huffman codes from the Huffman tree.
+	 * Build a huffman tree from characters and their frequencies, popping nodes
+	 * from the queue in the given order. Interior nodes are numbered from
+	 * {@link HuffmanNode#FIRST_INTERIOR_SEQUENCE} in the order they are made.
 	 * 
-	 * @param root The root node of the Huffman tree
-	 * @return A map of characters to their Huffman codes
+	 * @param symbols     The characters to form leaves from
+	 * @param frequencies The frequency of each character
+	 * @param size        The number of characters to use from the arrays
+	 * @param order       The order of the queue, or null for the natural order
+	 * @return The root of the huffman tree, or null if size is 0
 	 */
-	private static HashTable<Character, String> generateHuffmanCodes(HuffmanNode root) {
-		HashTable<Character, String> codes = new HashTable<>();
-		generateCodes(root, "", codes);
-		return codes;
+	static HuffmanNode buildHuffmanTree(char[] symbols, long[] frequencies, int size, Comparator<HuffmanNode> order) {
+		PriorityQueue queue = new PriorityQueue(Math.max(size, 1), order);
+
+		for (int i = 0; i < size; i++) {
+			queue.insert(new HuffmanNode(symbols[i], frequencies[i]));
+		}
+
+		// Build the Huffman tree by combining nodes from the priority queue
+		int sequence = HuffmanNode.FIRST_INTERIOR_SEQUENCE;
+		while (queue.size() > 1) {
+			HuffmanNode left = queue.popMin();
+			HuffmanNode right = queue.popMin();
+			queue.insert(new HuffmanNode(left.getFrequency() + right.getFrequency(), left, right, sequence++));
+		}
+
+		// Return the root node of the Huffman tree
+		HuffmanNode root = queue.popMin();
+		if (root != null && root.isLeaf()) {
+			// A lone character is the left child of its root, with the code 0
+			root = new HuffmanNode(root.getFrequency(), root, null);
+		}
+		return root;
 	}
 
 	/**
-	 * Recursive method to generate Huffman codes for each character.
+	 * Recursive method to generate Huffman codes for each character. The code of
+	 * the current node is kept in one shared array, so a String is only made for
+	 * each leaf rather than for each edge.
 	 * 
-	 * @param node       The current node in the Huffman tree
-	 * @param code       The Huffman code built so far
-	 * @param codes      The HashTable to store character codes
-	 * @param debugTable StringBuilder to build output
+	 * @param node  The current node in the Huffman tree
+	 * @param path  The code of the current node in its first depth chars
+	 * @param depth The length of the code of the current node
+	 * @param index The position of each character's code in codes
+	 * @param codes The code of each character
 	 */
-	private static void generateCodes(HuffmanNode node, String code, HashTable<Character, String> codes) {
+	private static void generateCodes(HuffmanNode node, char[] path, int depth, CharIntMap index,
+			ArrayList<String> codes) {
 		if (node == null) {
 			return;
 		}
 
-		if (node.getLeftChild() == null && node.getRightChild() == null) {
-			codes.put(node.getData(), code);
+		if (node.isLeaf()) {
+			index.put(node.getData(), codes.size());
+			codes.add(new String(path, 0, depth));
 		} else {
-			generateCodes(node.getLeftChild(), code + "0", codes);
-			generateCodes(node.getRightChild(), code + "1", codes);
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, depth * 2);
+			}
+			path[depth] = '0';
+			generateCodes(node.getLeftChild(), path, depth + 1, index, codes);
+			path[depth] = '1';
+			generateCodes(node.getRightChild(), path, depth + 1, index, codes);
 		}
 	}
 }
@@ -0,0 +1,156 @@
+package model;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * The result of {@link Encode#encodeBatch}: many messages encoded one after
+ * another into a single array of bits with one shared tree.
+ *
+ * Messages are packed with no padding between them, and the bit offset and
+ * character offset of each message are recorded, so any message can be decoded
+ * on its own by index. The decoding tables are built once, on the first decode,
+ * and shared by every message after it.
+ *
+ * @author Andrew Dennison
+ */
+public class EncodedBatch {
+
+	private final HuffmanNode root;
+	private final int[] bits;
+	private final long[] bitOffsets;
+	private final int[] charOffsets;
+
+	// Built on first use; any thread may build it, since every copy is the same
+	private volatile TableDecoder decoder;
+
+	/**
+	 * Create a container for encoded messages.
+	 *
+	 * @param root        The tree every message was encoded with
+	 * @param bits        The bits of every message, most significant bit first
+	 * @param bitOffsets  The bit offset of each message, followed by the total
+	 *                    number of bits
+	 * @param charOffsets The character offset of each message in the batch,
+	 *                    followed by the total number of characters
+	 */
+	EncodedBatch(HuffmanNode root, int[] bits, long[] bitOffsets, int[] charOffsets) {
+		this.root = root;
+		this.bits = bits;
+		this.bitOffsets = bitOffsets;
+		this.charOffsets = charOffsets;
+	}
+
+	/**
+	 * The tree every message was encoded with. Shared with the container, so
+	 * callers must not modify it.
+	 *
+	 * @return The root of the tree, or null if the batch holds no characters
+	 */
+	public HuffmanNode getRoot() {
+		return root;
+	}
+
+	/**
+	 * The number of messages.
+	 *
+	 * @return The number of messages
+	 */
+	public int size() {
+		return charOffsets.length - 1;
+	}
+
+	/**
+	 * The encoded bits of every message. Shared with the container, so callers
+	 * must not modify it.
+	 *
+	 * @return The bits, most significant bit first
+	 */
+	public int[] getBits() {
+		return bits;
+	}
+
+	/**
+	 * Get the bit offset of a message into {@link #getBits()}.
+	 *
+	 * @param index The index of the message
+	 * @return The position of the first bit of the message
+	 */
+	public long getBitOffset(int index) {
+		return bitOffsets[index];
+	}
+
+	/**
+	 * Get the number of bits in a message.
+	 *
+	 * @param index The index of the message
+	 * @return The bit length of the message
+	 */
+	public long getBitLength(int index) {
+		return bitOffsets[index + 1] - bitOffsets[index];
+	}
+
+	/**
+	 * Get the number of characters in a message.
+	 *
+	 * @param index The index of the message
+	 * @return The number of characters encoded by the message
+	 */
+	public int getMessageLength(int index) {
+		return charOffsets[index + 1] - charOffsets[index];
+	}
+
+	/**
+	 * The total number of bits in the batch.
+	 *
+	 * @return The bit length of every message together
+	 */
+	public long getTotalBits() {
+		return bitOffsets[bitOffsets.length - 1];
+	}
+
+	/**
+	 * Decode a single message.
+	 *
+	 * @param index The index of the message
+	 * @return The decoded message
+	 */
+	public String decode(int index) {
+		char[] message = new char[getMessageLength(index)];
+		decode(index, message, 0);
+		return new String(message);
+	}
+
+	/**
+	 * Decode a single message into an array, without building a String.
+	 *
+	 * @param index  The index of the message
+	 * @param dst    The array to store decoded characters in
+	 * @param dstOff The index to store the first character at
+	 * @return The number of characters decoded
+	 * @throws IndexOutOfBoundsException if dst has too little room after dstOff
+	 */
+	public int decode(int index, char[] dst, int dstOff) {
+		int length = getMessageLength(index);
+		if (dstOff < 0 || dstOff > dst.length - length) {
+			throw new IndexOutOfBoundsException("The array has no room for " + length + " characters at " + dstOff);
+		}
+		if (length > 0) {
+			decoder().decode(bits, bitOffsets[index], bitOffsets[index + 1], dst, dstOff, length);
+		}
+		return length;
+	}
+
+	/**
+	 * Get the decoder of the batch, building it on first use.
+	 *
+	 * @return The decoder
+	 */
+	private TableDecoder decoder() {
+		TableDecoder d = decoder;
+		if (d == null) {
+			d = new TableDecoder(root);
+			decoder = d;
+		}
+		return d;
+	}
+}
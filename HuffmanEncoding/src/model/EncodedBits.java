@@ -0,0 +1,104 @@
+package model;
+
+/**
+ * The result of {@link Encode#encodeWords(String, model.PriorityQueue.HuffmanNode)}:
+ * encoded bits packed into longs, most significant bit first, along with the
+ * exact number of bits and characters encoded.
+ *
+ * Unlike the int array of {@link Encode#encodeBits}, the bit length is a long,
+ * so encodings of more than 2^31 bits can be represented. The encoding can be
+ * stored with its long length header by {@link #toArray()} and read back with
+ * {@link #fromArray(long[])}.
+ *
+ * @author Andrew Dennison
+ */
+public class EncodedBits {
+
+	private final long[] words;
+	private final long bitLength;
+	private final int length;
+
+	/**
+	 * Create a container for encoded bits.
+	 *
+	 * @param words     The bits, most significant bit first
+	 * @param bitLength The number of bits used
+	 * @param length    The number of characters encoded
+	 */
+	EncodedBits(long[] words, long bitLength, int length) {
+		this.words = words;
+		this.bitLength = bitLength;
+		this.length = length;
+	}
+
+	/**
+	 * Find the number of longs needed to hold a number of bits.
+	 *
+	 * @param bitLength The number of bits
+	 * @return The number of longs
+	 */
+	static int wordsFor(long bitLength) {
+		long words = (bitLength + Long.SIZE - 1) / Long.SIZE;
+		if (words > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding is longer than " + Integer.MAX_VALUE + " longs");
+		}
+		return (int) words;
+	}
+
+	/**
+	 * Store the encoding as longs, in the form {bitLength, length, words...}.
+	 *
+	 * @return The encoding as an array of longs
+	 */
+	public long[] toArray() {
+		long[] array = new long[2 + words.length];
+		array[0] = bitLength;
+		array[1] = length;
+		System.arraycopy(words, 0, array, 2, words.length);
+		return array;
+	}
+
+	/**
+	 * Read an encoding stored by {@link #toArray()}.
+	 *
+	 * @param array The encoding as an array of longs
+	 * @return The encoding
+	 */
+	public static EncodedBits fromArray(long[] array) {
+		if (array.length < 2 || array[0] < 0 || array[1] < 0 || array[1] > Integer.MAX_VALUE
+				|| array.length - 2 != (array[0] + Long.SIZE - 1) / Long.SIZE) {
+			throw new IllegalArgumentException("The array does not hold an encoding");
+		}
+
+		long[] words = new long[array.length - 2];
+		System.arraycopy(array, 2, words, 0, words.length);
+		return new EncodedBits(words, array[0], (int) array[1]);
+	}
+
+	/**
+	 * The encoded bits. Shared with the container, so callers must not modify it.
+	 *
+	 * @return The bits, most significant bit first, zero padded at the end
+	 */
+	public long[] getWords() {
+		return words;
+	}
+
+	/**
+	 * The exact number of bits in the encoding.
+	 *
+	 * @return The bit length
+	 */
+	public long getBitLength() {
+		return bitLength;
+	}
+
+	/**
+	 * The number of characters encoded.
+	 *
+	 * @return The number of characters
+	 */
+	public int getLength() {
+		return length;
+	}
+}
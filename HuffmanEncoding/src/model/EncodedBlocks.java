@@ -0,0 +1,105 @@
+package model;
+
+/**
+ * The result of {@link Encode#encodeBlocks}: an input split into fixed-size
+ * blocks of characters, each encoded independently with the same tree.
+ *
+ * Every block starts on an int boundary of {@link #getBits()}, and its bit
+ * offset and bit length are recorded so any block can be decoded on its own,
+ * and all blocks can be decoded at the same time.
+ *
+ * @author Andrew Dennison
+ */
+public class EncodedBlocks {
+
+	private final int blockSize;
+	private final int length;
+	private final int[] bits;
+	private final long[] blockOffsets;
+	private final int[] blockLengths;
+
+	/**
+	 * Create a container for encoded blocks.
+	 *
+	 * @param blockSize    The number of characters in every block but the last
+	 * @param length       The total number of characters encoded
+	 * @param bits         The bits of every block, most significant bit first
+	 * @param blockOffsets The bit offset of the start of each block
+	 * @param blockLengths The number of bits in each block
+	 */
+	EncodedBlocks(int blockSize, int length, int[] bits, long[] blockOffsets, int[] blockLengths) {
+		this.blockSize = blockSize;
+		this.length = length;
+		this.bits = bits;
+		this.blockOffsets = blockOffsets;
+		this.blockLengths = blockLengths;
+	}
+
+	/**
+	 * The number of characters in every block but the last.
+	 *
+	 * @return The block size
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * The total number of characters encoded.
+	 *
+	 * @return The number of characters
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * The number of blocks.
+	 *
+	 * @return The number of blocks
+	 */
+	public int getBlockCount() {
+		return blockLengths.length;
+	}
+
+	/**
+	 * The encoded bits of every block. Shared with the container, so callers must
+	 * not modify it.
+	 *
+	 * @return The bits, most significant bit first
+	 */
+	public int[] getBits() {
+		return bits;
+	}
+
+	/**
+	 * Get the bit offset of a block into {@link #getBits()}. The offset is always
+	 * a multiple of 32.
+	 *
+	 * @param block The index of the block
+	 * @return The position of the first bit of the block
+	 */
+	public long getBlockOffset(int block) {
+		return blockOffsets[block];
+	}
+
+	/**
+	 * Get the number of bits in a block.
+	 *
+	 * @param block The index of the block
+	 * @return The bit length of the block
+	 */
+	public int getBlockLength(int block) {
+		return blockLengths[block];
+	}
+
+	/**
+	 * Get the number of characters in a block.
+	 *
+	 * @param block The index of the block
+	 * @return The number of characters encoded by the block
+	 */
+	public int getBlockChars(int block) {
+		return Math.min(blockSize, length - block * blockSize);
+	}
+}
@@ -0,0 +1,209 @@
+package model;
+
+import java.util.ArrayList;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * A compact, immutable copy of a Huffman tree stored in arrays instead of
+ * linked HuffmanNodes.
+ *
+ * Interior nodes are numbered in breadth-first order from the root, which is
+ * node 0, and their children are stored in the parallel arrays left and right.
+ * A child reference of 0 or more is another interior node. A negative child
+ * reference ~i is a leaf, whose character is symbols[i]. A missing child, which
+ * only appears in an invalid tree, is {@link #NONE}.
+ *
+ * A tree of n leaves takes two ints per interior node and one char per leaf,
+ * and a walk from the root touches only those arrays, with the top levels of
+ * the tree next to each other. A FlatHuffmanTree is never modified after
+ * construction, so one instance may be shared by many threads.
+ *
+ * @author Andrew Dennison
+ */
+public final class FlatHuffmanTree {
+
+	/**
+	 * The reference to a missing node.
+	 */
+	public static final int NONE = Integer.MIN_VALUE;
+
+	private final int root;
+	private final int[] left;
+	private final int[] right;
+	private final char[] symbols;
+	private final int depth;
+
+	/**
+	 * Create a tree from its arrays.
+	 *
+	 * @param root    The reference to the root node
+	 * @param left    The left child reference of each interior node
+	 * @param right   The right child reference of each interior node
+	 * @param symbols The character of each leaf
+	 * @param depth   The number of edges between the root and the deepest leaf
+	 */
+	private FlatHuffmanTree(int root, int[] left, int[] right, char[] symbols, int depth) {
+		this.root = root;
+		this.left = left;
+		this.right = right;
+		this.symbols = symbols;
+		this.depth = depth;
+	}
+
+	/**
+	 * Copy a tree of HuffmanNodes into arrays.
+	 *
+	 * @param root The root of the Huffman tree, or null for an empty tree
+	 * @return The flattened tree
+	 */
+	public static FlatHuffmanTree fromTree(HuffmanNode root) {
+		if (root == null) {
+			return new FlatHuffmanTree(NONE, new int[0], new int[0], new char[0], 0);
+		}
+		if (root.isLeaf()) {
+			return new FlatHuffmanTree(~0, new int[0], new int[0], new char[] { root.getData() }, 0);
+		}
+
+		// Number the interior nodes breadth first, without recursion
+		ArrayList<HuffmanNode> interior = new ArrayList<>();
+		interior.add(root);
+		int leafCount = 0;
+		for (int i = 0; i < interior.size(); i++) {
+			HuffmanNode node = interior.get(i);
+			for (HuffmanNode child : new HuffmanNode[] { node.getLeftChild(), node.getRightChild() }) {
+				if (child == null) {
+					continue;
+				}
+				if (child.isLeaf()) {
+					leafCount++;
+				} else {
+					interior.add(child);
+				}
+			}
+		}
+
+		// Children are numbered in the same order they were queued above
+		int[] left = new int[interior.size()];
+		int[] right = new int[interior.size()];
+		int[] depths = new int[interior.size()];
+		char[] symbols = new char[leafCount];
+		int nextInterior = 1;
+		int nextLeaf = 0;
+		int depth = 0;
+
+		for (int i = 0; i < interior.size(); i++) {
+			HuffmanNode node = interior.get(i);
+			for (int side = 0; side < 2; side++) {
+				HuffmanNode child = side == 0 ? node.getLeftChild() : node.getRightChild();
+				int ref;
+				if (child == null) {
+					ref = NONE;
+				} else if (child.isLeaf()) {
+					symbols[nextLeaf] = child.getData();
+					ref = ~nextLeaf++;
+					depth = Math.max(depth, depths[i] + 1);
+				} else {
+					depths[nextInterior] = depths[i] + 1;
+					ref = nextInterior++;
+				}
+
+				if (side == 0) {
+					left[i] = ref;
+				} else {
+					right[i] = ref;
+				}
+			}
+		}
+
+		return new FlatHuffmanTree(0, left, right, symbols, depth);
+	}
+
+	/**
+	 * Get the reference to the root of the tree.
+	 *
+	 * @return 0 if the root is an interior node, ~0 if the tree is a single leaf,
+	 *         or {@link #NONE} if the tree is empty
+	 */
+	public int getRoot() {
+		return root;
+	}
+
+	/**
+	 * Determine if a node reference is a leaf.
+	 *
+	 * @param node The node reference
+	 * @return True if a leaf, false if an interior node or {@link #NONE}
+	 */
+	public static boolean isLeaf(int node) {
+		return node < 0 && node != NONE;
+	}
+
+	/**
+	 * Get the left child of an interior node, reached by a 0 bit.
+	 *
+	 * @param node The reference to an interior node
+	 * @return The reference to its left child
+	 */
+	public int getLeftChild(int node) {
+		return left[node];
+	}
+
+	/**
+	 * Get the right child of an interior node, reached by a 1 bit.
+	 *
+	 * @param node The reference to an interior node
+	 * @return The reference to its right child
+	 */
+	public int getRightChild(int node) {
+		return right[node];
+	}
+
+	/**
+	 * Get the child of an interior node reached by a bit.
+	 *
+	 * @param node The reference to an interior node
+	 * @param bit  0 for the left child, any other value for the right child
+	 * @return The reference to the child
+	 */
+	public int getChild(int node, int bit) {
+		return bit == 0 ? left[node] : right[node];
+	}
+
+	/**
+	 * Get the character of a leaf.
+	 *
+	 * @param node The reference to a leaf
+	 * @return The character the leaf represents
+	 */
+	public char getData(int node) {
+		return symbols[~node];
+	}
+
+	/**
+	 * The number of interior nodes.
+	 *
+	 * @return The number of interior nodes
+	 */
+	public int getInteriorCount() {
+		return left.length;
+	}
+
+	/**
+	 * The number of leaves.
+	 *
+	 * @return The number of leaves
+	 */
+	public int getLeafCount() {
+		return symbols.length;
+	}
+
+	/**
+	 * The length of the longest code in the tree.
+	 *
+	 * @return The number of edges between the root and the deepest leaf
+	 */
+	public int getDepth() {
+		return depth;
+	}
+}
@@ -0,0 +1,548 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import model.HashTable.CharIntMap;
+
+/**
+ * The frequency of every distinct character in an input, counted with
+ * primitive arrays.
+ *
+ * Inputs of at least {@link #DENSE_THRESHOLD} characters count every character
+ * of the Basic Multilingual Plane in dense int arrays with one counter per char,
+ * so text in any script is counted without hashing. They are counted into four
+ * interleaved histograms, so that runs of the same character do not wait on
+ * the previous increment of the same counter. Only surrogates, the halves of
+ * the rare code points above U+FFFF, are counted in a sparse {@link CharIntMap}.
+ * Shorter inputs are counted entirely in a CharIntMap, so short messages do not
+ * pay for clearing and scanning the whole dense table.
+ *
+ * Inputs of at least {@link #DEFAULT_PARALLEL_THRESHOLD} characters, or of a
+ * threshold given to {@link #count(CharSequence, int)}, are split into chunks
+ * which are counted in parallel on a ForkJoinPool, and the per-chunk counts are
+ * then merged.
+ *
+ * Characters are listed in the order the original HashTable-based counter
+ * returned them: by {@code c % 17}, and then most recently first seen first.
+ * Leaves are inserted into the queue in this order, so trees built from a
+ * FrequencyTable have the same shape as before.
+ *
+ * Frequencies are longs, so counts from many inputs, such as the chunks of a
+ * stream, can be combined with {@link #merge(FrequencyTable)} past 2^31
+ * characters without overflowing.
+ *
+ * @author Adam Fehse and Andrew Dennison
+ */
+public class FrequencyTable {
+
+	/**
+	 * The number of counters in a dense histogram: one for every char.
+	 */
+	static final int DENSE_SIZE = Character.MAX_VALUE + 1;
+
+	/**
+	 * Inputs at least this long are counted into dense, interleaved histograms.
+	 * Clearing and adding the histograms touches every counter, so shorter inputs
+	 * are counted in a CharIntMap, which touches only the characters they hold.
+	 */
+	static final int DENSE_THRESHOLD = 1 << 16;
+
+	/**
+	 * The default number of characters at which counting is done in parallel.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 22;
+
+	/**
+	 * Parallel counting never splits the input into chunks smaller than this.
+	 */
+	static final int MIN_CHUNK = 1 << 18;
+
+	// The bucket count of the HashTable the character order is taken from
+	private static final int LEGACY_BUCKETS = 17;
+
+	private final char[] symbols;
+	private final long[] frequencies;
+
+	/**
+	 * Create a table from characters and their frequencies.
+	 *
+	 * @param symbols     The distinct characters, in queue insertion order
+	 * @param frequencies The frequency of each character
+	 */
+	FrequencyTable(char[] symbols, long[] frequencies) {
+		this.symbols = symbols;
+		this.frequencies = frequencies;
+	}
+
+	/**
+	 * Create a table from frequencies counted elsewhere. Characters are inserted
+	 * into the queue in the order given.
+	 *
+	 * @param symbols     The distinct characters
+	 * @param frequencies The frequency of each character, each at least 1
+	 * @return The table of frequencies
+	 */
+	public static FrequencyTable of(char[] symbols, long[] frequencies) {
+		if (symbols.length != frequencies.length) {
+			throw new IllegalArgumentException("There must be one frequency for each character");
+		}
+
+		long[] seen = new long[(Character.MAX_VALUE + 1) / Long.SIZE];
+		for (int i = 0; i < symbols.length; i++) {
+			char c = symbols[i];
+			if (frequencies[i] < 1) {
+				throw new IllegalArgumentException("The frequency of each character must be at least 1");
+			}
+			if ((seen[c >>> 6] & 1L << c) != 0) {
+				throw new IllegalArgumentException("The character " + (int) c + " is listed more than once");
+			}
+			seen[c >>> 6] |= 1L << c;
+		}
+
+		return new FrequencyTable(symbols.clone(), frequencies.clone());
+	}
+
+	/**
+	 * Add the frequencies of another table, such as the counts of the next chunk
+	 * of a stream. The characters of this table keep their order, and are
+	 * followed by the new characters of the other table in its order.
+	 *
+	 * @param other The frequencies to add
+	 * @return A new table holding the sum of both tables
+	 * @throws ArithmeticException If a frequency is larger than Long.MAX_VALUE
+	 */
+	public FrequencyTable merge(FrequencyTable other) {
+		int[] index = new int[Character.MAX_VALUE + 1];
+		for (int i = 0; i < symbols.length; i++) {
+			index[symbols[i]] = i + 1;
+		}
+
+		char[] mergedSymbols = Arrays.copyOf(symbols, symbols.length + other.symbols.length);
+		long[] mergedFrequencies = Arrays.copyOf(frequencies, mergedSymbols.length);
+		int size = symbols.length;
+		for (int i = 0; i < other.symbols.length; i++) {
+			char c = other.symbols[i];
+			if (index[c] == 0) {
+				mergedSymbols[size] = c;
+				index[c] = ++size;
+			}
+			mergedFrequencies[index[c] - 1] = Math.addExact(mergedFrequencies[index[c] - 1], other.frequencies[i]);
+		}
+
+		return new FrequencyTable(Arrays.copyOf(mergedSymbols, size), Arrays.copyOf(mergedFrequencies, size));
+	}
+
+	/**
+	 * The total number of characters counted.
+	 *
+	 * @return The sum of every frequency
+	 */
+	public long total() {
+		long total = 0;
+		for (long frequency : frequencies) {
+			total += frequency;
+		}
+		return total;
+	}
+
+	/**
+	 * Count the frequency of every character of an input, in parallel if it is at
+	 * least {@link #DEFAULT_PARALLEL_THRESHOLD} characters long.
+	 *
+	 * @param input The characters to count
+	 * @return The frequency of each distinct character
+	 */
+	public static FrequencyTable count(CharSequence input) {
+		return count(input, DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Count the frequency of every character of an input, in parallel on the
+	 * common ForkJoinPool if it is at least parallelThreshold characters long.
+	 * The result is the same either way.
+	 *
+	 * @param input             The characters to count
+	 * @param parallelThreshold The smallest input length to count in parallel
+	 * @return The frequency of each distinct character
+	 */
+	public static FrequencyTable count(CharSequence input, int parallelThreshold) {
+		if (parallelThreshold < 1) {
+			throw new IllegalArgumentException("The parallel threshold must be positive: " + parallelThreshold);
+		}
+		if (input.length() >= parallelThreshold) {
+			return countParallel(input, ForkJoinPool.commonPool());
+		}
+		return count(input, 0, input.length()).toTable();
+	}
+
+	/**
+	 * Count the frequency of every character of an input, splitting the work into
+	 * chunks across a pool. The result is the same as counting sequentially.
+	 *
+	 * @param input The characters to count
+	 * @param pool  The pool to count chunks on
+	 * @return The frequency of each distinct character
+	 */
+	public static FrequencyTable countParallel(CharSequence input, ForkJoinPool pool) {
+		// Aim for a few chunks per thread so uneven chunks can be balanced
+		int chunk = Math.max(MIN_CHUNK, input.length() / (pool.getParallelism() * 4));
+		return pool.invoke(new CountTask(input, 0, input.length(), chunk)).toTable();
+	}
+
+	/**
+	 * Count the frequency of every character in part of an input.
+	 *
+	 * @param input The characters to count
+	 * @param start The index of the first character
+	 * @param end   The index after the last character
+	 * @return The counts, along with the order characters were first seen in
+	 */
+	static Counts count(CharSequence input, int start, int end) {
+		if (end - start < DENSE_THRESHOLD) {
+			return countSparse(input, start, end);
+		}
+
+		int[] dense = new int[DENSE_SIZE];
+		int[] dense1 = new int[DENSE_SIZE];
+		int[] dense2 = new int[DENSE_SIZE];
+		int[] dense3 = new int[DENSE_SIZE];
+		CharIntMap sparse = new CharIntMap();
+		int i = start;
+
+		for (; i + 3 < end; i += 4) {
+			char c0 = input.charAt(i);
+			char c1 = input.charAt(i + 1);
+			char c2 = input.charAt(i + 2);
+			char c3 = input.charAt(i + 3);
+
+			if (!(Character.isSurrogate(c0) | Character.isSurrogate(c1) | Character.isSurrogate(c2)
+					| Character.isSurrogate(c3))) {
+				dense[c0]++;
+				dense1[c1]++;
+				dense2[c2]++;
+				dense3[c3]++;
+			} else {
+				countOne(c0, dense, sparse);
+				countOne(c1, dense1, sparse);
+				countOne(c2, dense2, sparse);
+				countOne(c3, dense3, sparse);
+			}
+		}
+
+		for (; i < end; i++) {
+			countOne(input.charAt(i), dense, sparse);
+		}
+
+		// Add the histograms together, counting the distinct characters on the way
+		int distinct = sparse.size();
+		for (int c = 0; c < DENSE_SIZE; c++) {
+			int sum = dense[c] + dense1[c] + dense2[c] + dense3[c];
+			dense[c] = sum;
+			if (sum != 0) {
+				distinct++;
+			}
+		}
+
+		return new Counts(dense, sparse, firstSeen(input, start, end, distinct));
+	}
+
+	/**
+	 * Count the frequency of every character in a short part of an input into a
+	 * CharIntMap, so only the characters it holds are touched. A character is
+	 * added to the first-seen order when its count goes from 0 to 1.
+	 *
+	 * @param input The characters to count
+	 * @param start The index of the first character
+	 * @param end   The index after the last character
+	 * @return The counts, along with the order characters were first seen in
+	 */
+	private static Counts countSparse(CharSequence input, int start, int end) {
+		CharIntMap counts = new CharIntMap();
+		char[] order = new char[Math.min(end - start, DENSE_SIZE)];
+		int distinct = 0;
+
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			if (counts.add(c, 1) == 1) {
+				order[distinct++] = c;
+			}
+		}
+
+		return new Counts(null, counts, distinct == order.length ? order : Arrays.copyOf(order, distinct));
+	}
+
+	/**
+	 * Count a single character.
+	 *
+	 * @param c      The character to count
+	 * @param dense  The dense histogram to count most characters in
+	 * @param sparse The table to count surrogates in
+	 */
+	private static void countOne(char c, int[] dense, CharIntMap sparse) {
+		if (Character.isSurrogate(c)) {
+			sparse.add(c, 1);
+		} else {
+			dense[c]++;
+		}
+	}
+
+	/**
+	 * Find the order characters were first seen in, by scanning the input only
+	 * until every distinct character has been found.
+	 *
+	 * @param input    The characters which were counted
+	 * @param start    The index of the first counted character
+	 * @param end      The index after the last counted character
+	 * @param distinct The number of distinct characters counted
+	 * @return The distinct characters in the order they were first seen
+	 */
+	private static char[] firstSeen(CharSequence input, int start, int end, int distinct) {
+		char[] order = new char[distinct];
+		long[] seen = new long[DENSE_SIZE / Long.SIZE];
+		int found = 0;
+
+		for (int i = start; i < end && found < distinct; i++) {
+			char c = input.charAt(i);
+			long bit = 1L << c;
+			if ((seen[c >>> 6] & bit) == 0) {
+				seen[c >>> 6] |= bit;
+				order[found++] = c;
+			}
+		}
+		return order;
+	}
+	/**
+	 * The number of distinct characters.
+	 *
+	 * @return The number of distinct characters
+	 */
+	public int size() {
+		return symbols.length;
+	}
+
+	/**
+	 * Get a character of the table.
+	 *
+	 * @param index The position of the character, in queue insertion order
+	 * @return The character at index
+	 */
+	public char symbol(int index) {
+		return symbols[index];
+	}
+
+	/**
+	 * Get the frequency of a character of the table.
+	 *
+	 * @param index The position of the character, in queue insertion order
+	 * @return The frequency of the character at index
+	 */
+	public long frequency(int index) {
+		return frequencies[index];
+	}
+
+	/**
+	 * The distinct characters, in queue insertion order. Shared with the table,
+	 * so callers must not modify it.
+	 *
+	 * @return The characters of the table
+	 */
+	char[] symbols() {
+		return symbols;
+	}
+
+	/**
+	 * The frequency of each character. Shared with the table, so callers must not
+	 * modify it.
+	 *
+	 * @return The frequencies of the table
+	 */
+	long[] frequencies() {
+		return frequencies;
+	}
+
+	/**
+	 * Sort characters by frequency, then character.
+	 *
+	 * Frequencies below 2^47 are packed with the rank of their character into a
+	 * single long, so the sort is one primitive sort. Larger frequencies fall back
+	 * to a comparator sort.
+	 *
+	 * @param symbols     The distinct characters
+	 * @param frequencies The frequency of each character
+	 * @param size        The number of characters to use from the arrays
+	 * @return The indices of the characters in sorted order
+	 */
+	static int[] sortByFrequency(char[] symbols, long[] frequencies, int size) {
+		long largest = 0;
+		for (int i = 0; i < size; i++) {
+			largest = Math.max(largest, frequencies[i]);
+		}
+
+		int[] sorted = new int[size];
+		if (largest >= 1L << (Long.SIZE - 1 - Character.SIZE)) {
+			Integer[] boxed = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				boxed[i] = i;
+			}
+			Arrays.sort(boxed, (a, b) -> frequencies[a] != frequencies[b]
+					? Long.compare(frequencies[a], frequencies[b])
+					: Character.compare(symbols[a], symbols[b]));
+			for (int i = 0; i < size; i++) {
+				sorted[i] = boxed[i];
+			}
+			return sorted;
+		}
+
+		// Rank the characters, so a rank and a frequency fit in one long
+		long[] bySymbol = new long[size];
+		for (int i = 0; i < size; i++) {
+			bySymbol[i] = (long) symbols[i] << Integer.SIZE | i;
+		}
+		Arrays.sort(bySymbol);
+
+		long[] keys = new long[size];
+		for (int rank = 0; rank < size; rank++) {
+			keys[rank] = frequencies[(int) bySymbol[rank]] << Character.SIZE | rank;
+		}
+		Arrays.sort(keys);
+		for (int i = 0; i < size; i++) {
+			sorted[i] = (int) bySymbol[(int) (keys[i] & Character.MAX_VALUE)];
+		}
+		return sorted;
+	}
+
+	/**
+	 * Character counts for part of an input, before they are put in queue
+	 * insertion order.
+	 */
+	static class Counts {
+		// Counts of every char but surrogates, or null if every count is in sparse
+		final int[] dense;
+		final CharIntMap sparse;
+
+		// Distinct characters in the order they were first seen
+		char[] order;
+
+		/**
+		 * Create counts.
+		 *
+		 * @param dense  The dense histogram, or null if sparse holds every count
+		 * @param sparse The counts not in the dense histogram
+		 * @param order  The distinct characters in the order they were first seen
+		 */
+		Counts(int[] dense, CharIntMap sparse, char[] order) {
+			this.dense = dense;
+			this.sparse = sparse;
+			this.order = order;
+		}
+
+		/**
+		 * Get the count of a character.
+		 *
+		 * @param c The character to look up
+		 * @return The number of times c was counted
+		 */
+		int get(char c) {
+			return dense == null || Character.isSurrogate(c) ? sparse.get(c, 0) : dense[c];
+		}
+
+		/**
+		 * Add to the count of a character.
+		 *
+		 * @param c     The character to count
+		 * @param delta The number of times to count it
+		 */
+		private void add(char c, int delta) {
+			if (dense == null || Character.isSurrogate(c)) {
+				sparse.add(c, delta);
+			} else {
+				dense[c] += delta;
+			}
+		}
+
+		/**
+		 * Add the counts of the part of the input directly after this part. Only the
+		 * characters the next part holds are visited.
+		 *
+		 * @param next The counts of the following part of the input
+		 */
+		void merge(Counts next) {
+			// Characters first seen in the next part follow those already seen
+			char[] merged = Arrays.copyOf(order, order.length + next.order.length);
+			int size = order.length;
+			for (char c : next.order) {
+				if (get(c) == 0) {
+					merged[size++] = c;
+				}
+				add(c, next.get(c));
+			}
+
+			order = size == merged.length ? merged : Arrays.copyOf(merged, size);
+		}
+
+		/**
+		 * List the counted characters in queue insertion order: grouped by
+		 * {@code c % 17}, and most recently first seen first within a group.
+		 *
+		 * @return The finished table
+		 */
+		FrequencyTable toTable() {
+			int[] bucketStart = new int[LEGACY_BUCKETS + 1];
+			for (char c : order) {
+				bucketStart[c % LEGACY_BUCKETS + 1]++;
+			}
+			for (int b = 0; b < LEGACY_BUCKETS; b++) {
+				bucketStart[b + 1] += bucketStart[b];
+			}
+
+			char[] symbols = new char[order.length];
+			long[] frequencies = new long[order.length];
+			for (int i = order.length - 1; i >= 0; i--) {
+				char c = order[i];
+				int index = bucketStart[c % LEGACY_BUCKETS]++;
+				symbols[index] = c;
+				frequencies[index] = get(c);
+			}
+
+			return new FrequencyTable(symbols, frequencies);
+		}
+	}
+
+	/**
+	 * Counts one range of the input, splitting it in half until it is no larger
+	 * than a single chunk.
+	 */
+	private static class CountTask extends RecursiveTask<Counts> {
+		private static final long serialVersionUID = 1L;
+
+		private final CharSequence input;
+		private final int start;
+		private final int end;
+		private final int chunk;
+
+		CountTask(CharSequence input, int start, int end, int chunk) {
+			this.input = input;
+			this.start = start;
+			this.end = end;
+			this.chunk = chunk;
+		}
+
+		@Override
+		protected Counts compute() {
+			if (end - start <= chunk) {
+				return count(input, start, end);
+			}
+
+			int middle = (start + end) >>> 1;
+			CountTask left = new CountTask(input, start, middle, chunk);
+			CountTask right = new CountTask(input, middle, end, chunk);
+			right.fork();
+
+			Counts counts = left.compute();
+			counts.merge(right.join());
+			return counts;
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package model.HashTable;
+
+import java.util.Arrays;
+
+/**
+ * A map from char keys to int values, stored in primitive arrays with open
+ * addressing.
+ *
+ * Unlike {@link HashTable}, no key or value is boxed and no entry objects are
+ * made: keys and values are stored side by side in two arrays, and a collision
+ * moves on to the next slot (linear probing). The number of slots is always a
+ * power of two, and doubles whenever the table would be fuller than its load
+ * factor, so lookups stay short however many keys are added.
+ *
+ * @author Andrew Dennison
+ */
+public class CharIntMap {
+
+	/**
+	 * The number of slots of a new map when no capacity is given.
+	 */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * The fraction of slots which may be used before the map grows, when no load
+	 * factor is given.
+	 */
+	public static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+	// The largest number of slots; one per char is always enough
+	private static final int MAX_SLOTS = Character.MAX_VALUE + 1;
+
+	// Marks an empty slot, since every key is from 0 to 0xFFFF
+	private static final int EMPTY = -1;
+
+	private final float loadFactor;
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+	// The size at which the map grows
+	private int threshold;
+
+	/**
+	 * Constructs a new map with the default capacity and load factor.
+	 */
+	public CharIntMap() {
+		this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * Constructs a new map with room for a number of keys before it grows.
+	 *
+	 * @param expected   The number of keys expected
+	 * @param loadFactor The fraction of slots which may be used, greater than 0
+	 *                   and less than 1
+	 */
+	public CharIntMap(int expected, float loadFactor) {
+		if (!(loadFactor > 0 && loadFactor < 1)) {
+			throw new IllegalArgumentException("The load factor must be between 0 and 1: " + loadFactor);
+		}
+		if (expected < 0) {
+			throw new IllegalArgumentException("The expected size must not be negative: " + expected);
+		}
+		this.loadFactor = loadFactor;
+
+		int slots = 2;
+		while (slots < MAX_SLOTS && slots * loadFactor < expected) {
+			slots <<= 1;
+		}
+		allocate(slots);
+	}
+
+	/**
+	 * Replace the arrays with empty ones of a number of slots.
+	 *
+	 * @param slots The number of slots, a power of two
+	 */
+	private void allocate(int slots) {
+		keys = new int[slots];
+		Arrays.fill(keys, EMPTY);
+		values = new int[slots];
+		mask = slots - 1;
+		// A full table of every char never grows, and never needs an empty slot
+		threshold = slots == MAX_SLOTS ? MAX_SLOTS : Math.min(slots - 1, (int) (slots * loadFactor));
+	}
+
+	/**
+	 * Find the slot a key hashes to. Chars are often close together, so the key
+	 * is multiplied by a large odd constant to spread them over the table.
+	 *
+	 * @param key The key
+	 * @return The first slot to look in
+	 */
+	private int slot(char key) {
+		return (key * 0x9E3779B9) >>> 16 & mask;
+	}
+
+	/**
+	 * Find the slot holding a key, or the empty slot where it would be added.
+	 *
+	 * @param key The key to look for
+	 * @return The slot of the key, or the first empty slot after where it hashes
+	 */
+	private int find(char key) {
+		int slot = slot(key);
+		while (keys[slot] != key && keys[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Retrieves the value associated with a key.
+	 *
+	 * @param key          The key whose associated value is to be retrieved
+	 * @param defaultValue The value to return if the key is not found
+	 * @return The value of the key, or defaultValue if the map contains no
+	 *         mapping for it
+	 */
+	public int get(char key, int defaultValue) {
+		int slot = find(key);
+		return keys[slot] == EMPTY ? defaultValue : values[slot];
+	}
+
+	/**
+	 * Determine if the map holds a key.
+	 *
+	 * @param key The key to look for
+	 * @return True if the key has a value
+	 */
+	public boolean containsKey(char key) {
+		return keys[find(key)] != EMPTY;
+	}
+
+	/**
+	 * Associates a value with a key, replacing any value it had.
+	 *
+	 * @param key   The key with which the value is to be associated
+	 * @param value The value to be associated with the key
+	 */
+	public void put(char key, int value) {
+		int slot = find(key);
+		if (keys[slot] == EMPTY) {
+			slot = insert(key, slot);
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * Adds to the value of a key, which starts at 0 if the key is not found.
+	 *
+	 * @param key   The key whose value is added to
+	 * @param delta The amount to add
+	 * @return The new value of the key
+	 */
+	public int add(char key, int delta) {
+		int slot = find(key);
+		if (keys[slot] == EMPTY) {
+			slot = insert(key, slot);
+		}
+		return values[slot] += delta;
+	}
+
+	/**
+	 * Store a new key in an empty slot, growing the map first if it is too full.
+	 *
+	 * @param key  The key to add
+	 * @param slot The empty slot found for the key
+	 * @return The slot the key was stored in, with a value of 0
+	 */
+	private int insert(char key, int slot) {
+		if (size >= threshold) {
+			grow();
+			slot = find(key);
+		}
+		keys[slot] = key;
+		values[slot] = 0;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Double the number of slots, moving every key to its slot in the new arrays.
+	 */
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(oldKeys.length * 2);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = find((char) oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of keys in the map.
+	 *
+	 * @return The size of the map
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the keys of the map, in no particular order.
+	 *
+	 * @return An array of every key
+	 */
+	public char[] keys() {
+		char[] result = new char[size];
+		int index = 0;
+		for (int key : keys) {
+			if (key != EMPTY) {
+				result[index++] = (char) key;
+			}
+		}
+		return result;
+	}
+}
@@ -1,26 +1,66 @@
 package model.HashTable;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
 /**
  * A custom HashTable class to store key-value pairs using linked lists for
  * collision resolution. Supports generic types for keys (K) and values (V).
- * 
+ *
+ * The number of buckets is a power of two, and the bits of each hash code are
+ * spread before its low bits choose a bucket, so every hash code, including
+ * Integer.MIN_VALUE, maps to a valid bucket. Once the table is fuller than its
+ * load factor, it starts moving its entries to a table twice the size. The
+ * move is incremental: each later put moves at most {@link #MIGRATE_STEP}
+ * buckets, so no single put pays for rehashing the whole table. Lookups look in
+ * whichever table holds the key's bucket and never move anything, so a table
+ * which is no longer being put to may be read by many threads at once.
+ *
+ * Keys are iterated in the order they were first put, without copying them.
+ *
  * @author Adam Fehse
  */
-public class HashTable<K, V> {
-	private static final int DEFAULT_CAPACITY = 17; // Default capacity of the hash table
+public class HashTable<K, V> implements Iterable<K> {
+	private static final int DEFAULT_CAPACITY = 16; // Default capacity of the hash table
+	private static final float DEFAULT_LOAD_FACTOR = 0.75f; // Entries per bucket before growing
+	private static final int MAX_CAPACITY = 1 << 30; // Largest number of buckets
+
+	/**
+	 * The most buckets a put moves to the new table while the table is growing.
+	 * With a load factor of at least 1 / MIGRATE_STEP every move finishes before
+	 * the table next grows; with a smaller one, a put which grows the table again
+	 * first finishes the previous move.
+	 */
+	public static final int MIGRATE_STEP = 4;
+
+	private final float loadFactor;
 	private Entry<K, V>[] table; // Array of Entry's (buckets)
 	private int size; // Number of key-value pairs stored in the hash table
+	private int threshold; // Size at which the table grows
+
+	// While growing, the old buckets, and the number of them moved so far
+	private Entry<K, V>[] oldTable;
+	private int migrated;
+
+	// Entries in the order they were first put
+	private Entry<K, V> head;
+	private Entry<K, V> tail;
 
 	/**
 	 * Inner class: representing a key-value pair (entry) in the hash table.
 	 */
 	private static class Entry<K, V> {
-		K key;
+		final K key;
+		final int hash;
 		V value;
 		Entry<K, V> next; // Reference to the next entry in case of collision
+		Entry<K, V> after; // Reference to the entry put after this one
 
-		Entry(K key, V value) {
+		Entry(K key, int hash, V value) {
 			this.key = key;
+			this.hash = hash;
 			this.value = value;
 			this.next = null;
 		}
@@ -35,86 +75,161 @@ public class HashTable<K, V> {
 
 	/**
 	 * Constructs a new HashTable with the specified capacity.
-	 * 
-	 * @param capacity The initial capacity of the hash table
+	 *
+	 * @param capacity The initial capacity of the hash table, rounded up to a
+	 *                 power of two
 	 */
-	@SuppressWarnings("unchecked")
 	public HashTable(int capacity) {
-		this.table = new Entry[capacity];
+		this(capacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * Constructs a new HashTable with the specified capacity and load factor.
+	 *
+	 * @param capacity   The initial capacity of the hash table, rounded up to a
+	 *                   power of two
+	 * @param loadFactor The number of entries per bucket at which the table
+	 *                   grows
+	 */
+	public HashTable(int capacity, float loadFactor) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("The capacity must not be negative: " + capacity);
+		}
+		if (!(loadFactor > 0)) {
+			throw new IllegalArgumentException("The load factor must be positive: " + loadFactor);
+		}
+		this.loadFactor = loadFactor;
+
+		int buckets = 1;
+		while (buckets < capacity && buckets < MAX_CAPACITY) {
+			buckets <<= 1;
+		}
+		this.table = newTable(buckets);
+		this.threshold = thresholdFor(buckets);
 		this.size = 0;
 	}
 
+	/**
+	 * Creates an array of buckets.
+	 *
+	 * @param buckets The number of buckets
+	 * @return The empty buckets
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> Entry<K, V>[] newTable(int buckets) {
+		return new Entry[buckets];
+	}
+
+	/**
+	 * Finds the size at which a table of a number of buckets grows.
+	 *
+	 * @param buckets The number of buckets
+	 * @return The threshold
+	 */
+	private int thresholdFor(int buckets) {
+		return buckets == MAX_CAPACITY ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, (long) (buckets * loadFactor));
+	}
+
 	/**
 	 * Retrieves the value associated with the specified key from the hash table.
-	 * 
+	 *
 	 * @param key The key whose associated value is to be retrieved
 	 * @return The value associated with the specified key, or null if the key is
 	 *         not found
 	 */
 	public V get(K key) {
-		int index = hash(key);
-		Entry<K, V> entry = findEntry(key, index);
+		Entry<K, V> entry = findEntry(key, hash(key));
 		return (entry != null) ? entry.value : null;
 	}
 
 	/**
 	 * Returns the value associated with the specified key in the hash table. If the
 	 * key is not found, returns the specified default value.
-	 * 
+	 *
 	 * @param key          The key whose associated value is to be retrieved
 	 * @param defaultValue The default value to return if the key is not found
 	 * @return value to which the specified key is mapped, or defaultValue if this
 	 *         map contains no mapping for the key
 	 */
 	public V getOrDefault(K key, V defaultValue) {
-		int index = hash(key);
-		Entry<K, V> entry = findEntry(key, index);
+		Entry<K, V> entry = findEntry(key, hash(key));
 		return (entry != null) ? entry.value : defaultValue;
 	}
 
 	/**
 	 * Associates the specified value with the specified key in the hash table.
-	 * 
+	 *
 	 * @param key   The key with which the specified value is to be associated
 	 * @param value The value to be associated with the specified key
 	 */
 	public void put(K key, V value) {
-		int index = hash(key);
-		Entry<K, V> entry = findEntry(key, index);
+		if (oldTable != null) {
+			migrate(MIGRATE_STEP);
+		}
+
+		int hash = hash(key);
+		Entry<K, V> entry = findEntry(key, hash);
 		if (entry != null) {
 			entry.value = value; // Update existing entry
+			return;
+		}
+
+		if (size >= threshold) {
+			grow();
+		}
+
+		// Key not found, create a new entry and add it to the bucket, which is
+		// still in the old table if that bucket has not moved yet
+		Entry<K, V> newEntry = new Entry<K, V>(key, hash, value);
+		Entry<K, V>[] buckets = table;
+		if (oldTable != null && (hash & (oldTable.length - 1)) >= migrated) {
+			buckets = oldTable;
+		}
+		int index = hash & (buckets.length - 1);
+		newEntry.next = buckets[index]; // Insert at the beginning of the linked list
+		buckets[index] = newEntry;
+		size++;
+
+		if (tail == null) {
+			head = newEntry;
 		} else {
-			// Key not found, create a new entry and add it to the bucket
-			Entry<K, V> newEntry = new Entry<K, V>(key, value);
-			newEntry.next = table[index]; // Insert at the beginning of the linked list
-			table[index] = newEntry;
-			size++;
+			tail.after = newEntry;
 		}
+		tail = newEntry;
 	}
 
 	/**
-	 * Computes the hash code for the specified key.
-	 * 
+	 * Computes the hash code for the specified key, with its high bits spread
+	 * into its low bits, which choose the bucket.
+	 *
 	 * @param key The key for which to compute the hash code
 	 * @return The hash code computed for the key
 	 */
-	private int hash(K key) {
-		return Math.abs(key.hashCode()) % table.length;
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
 	}
 
 	/**
-	 * Finds and returns the entry associated with the specified key in the
-	 * specified bucket index.
-	 * 
-	 * @param key   The key to search for
-	 * @param index The bucket index
-	 * @return The entry associated with the key, or null if the key is not found in
-	 *         the bucket
+	 * Finds and returns the entry associated with the specified key, without
+	 * changing the table.
+	 *
+	 * @param key  The key to search for
+	 * @param hash The spread hash code of the key
+	 * @return The entry associated with the key, or null if the key is not found
 	 */
-	private Entry<K, V> findEntry(K key, int index) {
-		Entry<K, V> entry = table[index];
+	private Entry<K, V> findEntry(K key, int hash) {
+		// Buckets of the old table which have not moved yet still hold their keys
+		Entry<K, V>[] old = oldTable;
+		Entry<K, V> entry;
+		if (old != null && (hash & (old.length - 1)) >= migrated) {
+			entry = old[hash & (old.length - 1)];
+		} else {
+			entry = table[hash & (table.length - 1)];
+		}
+
 		while (entry != null) {
-			if (entry.key.equals(key)) {
+			if (entry.hash == hash && entry.key.equals(key)) {
 				return entry;
 			}
 			entry = entry.next;
@@ -122,19 +237,75 @@ public class HashTable<K, V> {
 		return null; // Key not found in the bucket
 	}
 
+	/**
+	 * Starts moving the entries to a table twice the size. A move already in
+	 * progress is finished first.
+	 */
+	private void grow() {
+		if (oldTable != null) {
+			migrate(oldTable.length);
+		}
+		if (table.length == MAX_CAPACITY) {
+			threshold = Integer.MAX_VALUE;
+			return;
+		}
+
+		oldTable = table;
+		migrated = 0;
+		table = newTable(oldTable.length * 2);
+		threshold = thresholdFor(table.length);
+	}
+
+	/**
+	 * Moves buckets of the old table to the new one.
+	 *
+	 * @param buckets The most buckets to move
+	 */
+	private void migrate(int buckets) {
+		int end = Math.min(oldTable.length, migrated + buckets);
+		int mask = table.length - 1;
+
+		for (; migrated < end; migrated++) {
+			Entry<K, V> entry = oldTable[migrated];
+			oldTable[migrated] = null;
+			while (entry != null) {
+				Entry<K, V> next = entry.next;
+				int index = entry.hash & mask;
+				entry.next = table[index];
+				table[index] = entry;
+				entry = next;
+			}
+		}
+
+		if (migrated == oldTable.length) {
+			oldTable = null;
+			migrated = 0;
+		}
+	}
+
 	/**
 	 * Returns the current size (number of key-value pairs) of the hash table.
-	 * 
+	 *
 	 * @return The size of the hash table
 	 */
 	public int size() {
 		return size;
 	}
 
+	/**
+	 * Returns the number of buckets still to be moved to the new table while the
+	 * table is growing.
+	 *
+	 * @return The number of buckets left to move, or 0 if the table is not growing
+	 */
+	public int pendingBuckets() {
+		return oldTable == null ? 0 : oldTable.length - migrated;
+	}
+
 	/**
 	 * Retrieves the value associated with the specified character key from the hash
 	 * table.
-	 * 
+	 *
 	 * @param c The character key whose associated value is to be retrieved
 	 * @return The value associated with the specified character key, or null if the
 	 *         key is not found
@@ -149,37 +320,72 @@ public class HashTable<K, V> {
 	}
 
 	/**
-	 * Returns the set of keys stored in the hash table as an array.
-	 * 
+	 * Returns an iterator over the keys, in the order they were first put. Keys
+	 * put while iterating are included.
+	 *
+	 * @return An iterator over the keys
+	 */
+	@Override
+	public Iterator<K> iterator() {
+		return new Iterator<K>() {
+			private Entry<K, V> next = head;
+			private Entry<K, V> last;
+
+			@Override
+			public boolean hasNext() {
+				return last == null ? next != null : last.after != null;
+			}
+
+			@Override
+			public K next() {
+				Entry<K, V> entry = last == null ? next : last.after;
+				if (entry == null) {
+					throw new NoSuchElementException();
+				}
+				last = entry;
+				return entry.key;
+			}
+		};
+	}
+
+	/**
+	 * Performs an action for every key-value pair, in the order the keys were
+	 * first put, without copying them.
+	 *
+	 * @param action The action to perform on each key and its value
+	 */
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		for (Entry<K, V> entry = head; entry != null; entry = entry.after) {
+			action.accept(entry.key, entry.value);
+		}
+	}
+
+	/**
+	 * Returns the set of keys stored in the hash table as an array, in the order
+	 * they were first put. {@link #iterator()} and {@link #forEach} visit the
+	 * keys without copying them.
+	 *
 	 * @return An array containing all the keys stored in the hash table
 	 */
 	public Character[] keySet() {
 		Character[] keys = new Character[size]; // Create an array to store keys
 		int index = 0;
 
-		// Traverse each bucket and collect keys
-		for (Entry<K, V> entry : table) {
-			while (entry != null) {
-				// Ensure that the key is a Character before assigning
-				if (entry.key instanceof Character) {
-					keys[index++] = (Character) entry.key;
-				}
-				entry = entry.next;
+		for (Entry<K, V> entry = head; entry != null; entry = entry.after) {
+			// Ensure that the key is a Character before assigning
+			if (entry.key instanceof Character) {
+				keys[index++] = (Character) entry.key;
 			}
 		}
 
-		return keys;
+		return index == keys.length ? keys : Arrays.copyOf(keys, index);
 	}
 
 	@Override
 	public String toString() {
-		String result = "";
-
-		for (char key : keySet()) {
-			result += String.format("%c : %d\n", key, get(key));
-		}
-
-		return result;
+		StringBuilder result = new StringBuilder();
+		forEach((key, value) -> result.append(String.format("%c : %d\n", key, value)));
+		return result.toString();
 	}
 
 }
@@ -0,0 +1,338 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * Encodes and decodes requests asynchronously with one shared Huffman tree.
+ *
+ * The tree is read once into an immutable {@link CodeBook} and
+ * {@link TableDecoder}, which every request shares, so a request does no work
+ * besides its own encoding or decoding. Requests run on an Executor, which by
+ * default starts a virtual thread per request when the JVM supports them, and
+ * otherwise is a fixed pool with one thread per processor.
+ *
+ * At most {@code maxInFlight} requests are handed to the executor at once.
+ * Further requests wait in a queue of at most {@code maxQueued} requests, and
+ * start as running requests finish. Once the queue is full, new requests fail
+ * at once with a RejectedExecutionException, so an overload sheds requests
+ * instead of growing a queue, and its latency, without bound. Submitting never
+ * blocks, so requests may be chained from inside other requests. All methods
+ * may be called by many threads at once.
+ *
+ * Once closed, the codec rejects new requests, but every request already
+ * submitted, running or queued, still runs to completion.
+ *
+ * @author Andrew Dennison
+ */
+public final class HuffmanCodec implements AutoCloseable {
+
+	/**
+	 * The number of requests allowed in flight when no limit is given.
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+	/**
+	 * The number of requests allowed to wait when no limit is given.
+	 */
+	public static final int DEFAULT_MAX_QUEUED = 1 << 16;
+
+	private final CodeBook codes;
+	private final TableDecoder decoder;
+	private final Executor executor;
+	// The executor is shut down on close only if the codec created it
+	private final boolean ownsExecutor;
+	private final Semaphore inFlight;
+	private final int maxInFlight;
+	// Requests waiting for a permit, and their number
+	private final ConcurrentLinkedQueue<Request<?>> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final int maxQueued;
+	// Set by close; the executor is shut down once nothing is queued or running
+	private volatile boolean closed;
+	private final AtomicBoolean shutDown = new AtomicBoolean();
+
+	/**
+	 * Create a codec on the default executor, allowing
+	 * {@link #DEFAULT_MAX_IN_FLIGHT} requests in flight and
+	 * {@link #DEFAULT_MAX_QUEUED} waiting.
+	 *
+	 * @param root The root of the Huffman tree shared by every request
+	 */
+	public HuffmanCodec(HuffmanNode root) {
+		this(root, defaultExecutor(), true, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_QUEUED);
+	}
+
+	/**
+	 * Create a codec which runs requests on the given executor. The executor is
+	 * not shut down by {@link #close()}.
+	 *
+	 * @param root        The root of the Huffman tree shared by every request
+	 * @param executor    Runs each request
+	 * @param maxInFlight The largest number of requests given to the executor
+	 * @param maxQueued   The largest number of requests waiting to be given to
+	 *                    the executor
+	 */
+	public HuffmanCodec(HuffmanNode root, Executor executor, int maxInFlight, int maxQueued) {
+		this(root, executor, false, maxInFlight, maxQueued);
+	}
+
+	/**
+	 * Create a codec.
+	 *
+	 * @param root         The root of the Huffman tree shared by every request
+	 * @param executor     Runs each request
+	 * @param ownsExecutor True if close should shut down the executor
+	 * @param maxInFlight  The largest number of requests given to the executor
+	 * @param maxQueued    The largest number of requests waiting
+	 */
+	private HuffmanCodec(HuffmanNode root, Executor executor, boolean ownsExecutor, int maxInFlight, int maxQueued) {
+		if (root == null) {
+			throw new IllegalArgumentException("Please create a tree before trying to encode!");
+		}
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be at least 1");
+		}
+		if (maxQueued < 0) {
+			throw new IllegalArgumentException("maxQueued must not be negative");
+		}
+
+		FlatHuffmanTree tree = FlatHuffmanTree.fromTree(root);
+		this.codes = CodeBook.fromTree(tree);
+		this.decoder = new TableDecoder(tree);
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.maxInFlight = maxInFlight;
+		this.maxQueued = maxQueued;
+	}
+
+	/**
+	 * Create an executor which starts a virtual thread per task. Virtual threads
+	 * are looked up reflectively, so the library still runs on JVMs without them,
+	 * where a fixed pool of one daemon thread per processor is used instead.
+	 *
+	 * @return The default executor
+	 */
+	static ExecutorService defaultExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+				Thread thread = new Thread(task, "huffman-codec");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Encode a string in the format of
+	 * {@link Encode#encodeBits(String, HuffmanNode)}.
+	 *
+	 * @param input The string to convert to bits
+	 * @return The encoding, or an exception if a character has no code
+	 */
+	public CompletableFuture<int[]> encode(String input) {
+		return submit(() -> Encode.encodeBits(input, codes));
+	}
+
+	/**
+	 * Decode bits in the format of
+	 * {@link Encode#encodeBits(String, HuffmanNode)}.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @return The decoded String, or an exception if the tree cannot decode the
+	 *         encoding
+	 */
+	public CompletableFuture<String> decode(int[] encoding) {
+		return submit(() -> {
+			StringBuilder result = new StringBuilder();
+			try {
+				decoder.decode(encoding, result);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e); // A StringBuilder never throws
+			}
+			return result.toString();
+		});
+	}
+
+	/**
+	 * Run a request on the executor at once if it is allowed in flight, and
+	 * otherwise queue it.
+	 *
+	 * @param work The work of the request
+	 * @return The result of the request
+	 */
+	private <T> CompletableFuture<T> submit(Supplier<T> work) {
+		Request<T> request = new Request<>(work);
+
+		if (closed) {
+			request.result.completeExceptionally(new RejectedExecutionException("The codec is closed"));
+		} else if (pending.isEmpty() && inFlight.tryAcquire()) {
+			dispatch(request);
+		} else if (queued.incrementAndGet() > maxQueued) {
+			queued.decrementAndGet();
+			request.result.completeExceptionally(
+					new RejectedExecutionException(maxQueued + " requests are already waiting"));
+		} else {
+			pending.add(request);
+			drain();
+		}
+		return request.result;
+	}
+
+	/**
+	 * Give a request which holds a permit to the executor.
+	 *
+	 * @param request The request to run
+	 */
+	private void dispatch(Request<?> request) {
+		try {
+			executor.execute(request);
+		} catch (RuntimeException | Error e) {
+			// Rejected, or the executor failed: the request never runs
+			inFlight.release();
+			request.result.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Give waiting requests to the executor while permits are available.
+	 */
+	private void drain() {
+		while (!pending.isEmpty() && inFlight.tryAcquire()) {
+			Request<?> next = pending.poll();
+			if (next == null) {
+				inFlight.release();
+			} else {
+				queued.decrementAndGet();
+				dispatch(next);
+			}
+		}
+	}
+
+	/**
+	 * A request and the future of its result.
+	 */
+	private final class Request<T> implements Runnable {
+		private final Supplier<T> work;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+
+		/**
+		 * Create a request.
+		 *
+		 * @param work The work of the request
+		 */
+		Request(Supplier<T> work) {
+			this.work = work;
+		}
+
+		@Override
+		public void run() {
+			T value = null;
+			Throwable failure = null;
+			try {
+				value = work.get();
+			} catch (RuntimeException | Error e) {
+				failure = e;
+			}
+
+			// The future completes even if starting the next request fails
+			try {
+				finish();
+			} finally {
+				if (failure != null) {
+					result.completeExceptionally(failure);
+				} else {
+					result.complete(value);
+				}
+			}
+		}
+
+		/**
+		 * Return the permit and start the next waiting request. This happens
+		 * before completing, since dependent stages may run on this thread and
+		 * submit requests of their own.
+		 */
+		private void finish() {
+			inFlight.release();
+			drain();
+			if (closed) {
+				shutDownIfIdle();
+			}
+		}
+	}
+
+	/**
+	 * The codes of the shared tree.
+	 *
+	 * @return The codes
+	 */
+	public CodeBook getCodeBook() {
+		return codes;
+	}
+
+	/**
+	 * The number of requests given to the executor which have not finished.
+	 *
+	 * @return The number of requests in flight
+	 */
+	public int getInFlight() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+
+	/**
+	 * The largest number of requests given to the executor at once.
+	 *
+	 * @return The limit on requests in flight
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * The number of requests waiting to be given to the executor.
+	 *
+	 * @return The number of waiting requests
+	 */
+	public int getQueued() {
+		return queued.get();
+	}
+
+	/**
+	 * Stop accepting requests. New requests fail with a
+	 * RejectedExecutionException, while requests already submitted, running or
+	 * queued, still run. The default executor is shut down once the last of them
+	 * finishes; an executor given to the constructor is left running. Does not
+	 * wait for the requests to finish.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		shutDownIfIdle();
+	}
+
+	/**
+	 * Shut down the default executor if nothing is queued or running.
+	 */
+	private void shutDownIfIdle() {
+		if (ownsExecutor && pending.isEmpty() && getInFlight() == 0 && shutDown.compareAndSet(false, true)) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package model;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * Encodes and decodes with one tree into caller-supplied buffers, reusing its
+ * own scratch state, so that once the tables are built no call allocates.
+ *
+ * The codes and decoding tables are immutable and may be shared, but the
+ * scratch state of a context is not, so each thread needs its own context. A
+ * context for another thread which shares the tables is made with
+ * {@link #newContext()}.
+ *
+ * @author Andrew Dennison
+ */
+public final class HuffmanContext {
+
+	private final CodeBook codes;
+	private final TableDecoder decoder;
+
+	// The position while decoding, reused by every call
+	private final long[] position = new long[1];
+
+	/**
+	 * Create a context for a tree.
+	 *
+	 * @param root The root of the Huffman tree
+	 */
+	public HuffmanContext(HuffmanNode root) {
+		if (root == null) {
+			throw new IllegalArgumentException("Please create a tree before trying to encode!");
+		}
+		FlatHuffmanTree tree = FlatHuffmanTree.fromTree(root);
+		this.codes = CodeBook.fromTree(tree);
+		this.decoder = new TableDecoder(tree);
+	}
+
+	/**
+	 * Create a context from codes and tables built elsewhere.
+	 *
+	 * @param codes   The codes of the tree
+	 * @param decoder The decoding tables of the same tree
+	 */
+	private HuffmanContext(CodeBook codes, TableDecoder decoder) {
+		this.codes = codes;
+		this.decoder = decoder;
+	}
+
+	/**
+	 * Create a context for another thread, sharing the codes and tables of this
+	 * one but with scratch state of its own.
+	 *
+	 * @return The new context
+	 */
+	public HuffmanContext newContext() {
+		return new HuffmanContext(codes, decoder);
+	}
+
+	/**
+	 * Find the number of ints {@link #encode} needs for an input.
+	 *
+	 * @param input The characters to measure
+	 * @return The number of ints, including the length header
+	 */
+	public int encodedSize(CharSequence input) {
+		long length = codes.bitLength(input, 0, input.length());
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding is longer than " + Integer.MAX_VALUE + " bits, use encodeWords");
+		}
+		return Math.max(1, (int) ((length + Integer.SIZE - 1) / Integer.SIZE)) + 1;
+	}
+
+	/**
+	 * Encode an input into a caller-supplied array, in the format of
+	 * {@link Encode#encodeBits(String, HuffmanNode)}. Ints after the last one
+	 * used are left as they were.
+	 *
+	 * @param input The characters to convert to bits
+	 * @param dst   The array to store {numBits, bits, bits...} in
+	 * @return The number of ints used, including the length header
+	 * @throws IndexOutOfBoundsException if dst holds fewer than
+	 *                                   {@link #encodedSize} ints
+	 */
+	public int encode(CharSequence input, int[] dst) {
+		int size = encodedSize(input);
+		if (size > dst.length) {
+			throw new IndexOutOfBoundsException("The encoding needs " + size + " ints, but only " + dst.length
+					+ " were given");
+		}
+
+		dst[1] = 0; // An empty encoding still holds one word of bits
+		dst[0] = (int) codes.encode(input, 0, input.length(), dst, 1);
+		return size;
+	}
+
+	/**
+	 * Decode bits in the format of {@link Encode#encodeBits(String, HuffmanNode)}
+	 * into a caller-supplied array.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param dst      The array to store decoded characters in
+	 * @param dstOff   The index to store the first character at
+	 * @return The number of characters decoded
+	 * @throws IndexOutOfBoundsException if dst has too little room after dstOff
+	 * @throws IllegalArgumentException  if the tree cannot decode the encoding
+	 */
+	public int decode(int[] encoding, char[] dst, int dstOff) {
+		return decoder.decode(encoding, dst, dstOff, position);
+	}
+
+	/**
+	 * The codes of the tree.
+	 *
+	 * @return The codes
+	 */
+	public CodeBook getCodeBook() {
+		return codes;
+	}
+}
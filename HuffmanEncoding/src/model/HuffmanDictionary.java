@@ -0,0 +1,305 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A canonical code trained once from a sample corpus and shared by every
+ * message encoded with it, so short messages need neither a tree of their own
+ * nor a header.
+ *
+ * Characters which were not in the samples are written as the
+ * {@link #ESCAPE} symbol followed by the 16 bits of the character. The escape
+ * symbol is given the frequency of the characters seen only once in the
+ * samples, which estimates how often a new character appears. Codes are
+ * limited to {@link CanonicalCode#MAX_CODE_LENGTH} bits with the package-merge
+ * algorithm, so no corpus is too skewed to train on.
+ *
+ * A dictionary is stored as the header of its canonical code, and is never
+ * modified after it is built, so one instance may be shared by many threads.
+ *
+ * @author Andrew Dennison
+ */
+public final class HuffmanDictionary {
+
+	/**
+	 * The symbol written before a character which has no code of its own.
+	 */
+	public static final int ESCAPE = CanonicalCode.MAX_SYMBOL;
+
+	// The number of raw bits written after an escape
+	private static final int ESCAPED_BITS = Character.SIZE;
+
+	private final CanonicalCode code;
+
+	/**
+	 * Create a dictionary from its canonical code.
+	 *
+	 * @param code The code of every trained character, and of the escape
+	 */
+	private HuffmanDictionary(CanonicalCode code) {
+		this.code = code;
+	}
+
+	/**
+	 * Train a dictionary from sample messages.
+	 *
+	 * @param samples Messages like those which will be encoded
+	 * @return The trained dictionary
+	 */
+	public static HuffmanDictionary train(Iterable<? extends CharSequence> samples) {
+		long[] counts = new long[Character.MAX_VALUE + 1];
+		for (CharSequence sample : samples) {
+			for (int i = 0; i < sample.length(); i++) {
+				counts[sample.charAt(i)]++;
+			}
+		}
+		return train(counts);
+	}
+
+	/**
+	 * Train a dictionary from the character frequencies of a sample corpus.
+	 *
+	 * @param frequencies The frequency of each character of the samples
+	 * @return The trained dictionary
+	 */
+	public static HuffmanDictionary train(FrequencyTable frequencies) {
+		long[] counts = new long[Character.MAX_VALUE + 1];
+		for (int i = 0; i < frequencies.size(); i++) {
+			counts[frequencies.symbol(i)] = frequencies.frequency(i);
+		}
+		return train(counts);
+	}
+
+	/**
+	 * Train a dictionary from the count of every char.
+	 *
+	 * @param counts The count of each char, indexed by the char itself
+	 * @return The trained dictionary
+	 */
+	private static HuffmanDictionary train(long[] counts) {
+		// Symbols in ascending order, with the escape last
+		int[] symbols = new int[counts.length + 1];
+		long[] frequencies = new long[counts.length + 1];
+		int size = 0;
+		long singletons = 0;
+		for (int c = 0; c < counts.length; c++) {
+			if (counts[c] > 0) {
+				symbols[size] = c;
+				frequencies[size++] = counts[c];
+				if (counts[c] == 1) {
+					singletons++;
+				}
+			}
+		}
+
+		// Every char has a code already if all of them were seen
+		if (size < counts.length) {
+			symbols[size] = ESCAPE;
+			frequencies[size++] = Math.max(1, singletons);
+		}
+
+		// Symbols are ranked by value, so ties go to the lower symbol
+		char[] ranks = new char[size];
+		for (int i = 0; i < size; i++) {
+			ranks[i] = (char) i;
+		}
+		int[] lengths = PackageMerge.codeLengths(ranks, frequencies, size, CanonicalCode.MAX_CODE_LENGTH);
+
+		return new HuffmanDictionary(CanonicalCode.fromLengths(Arrays.copyOf(symbols, size), lengths));
+	}
+
+	/**
+	 * The canonical code of the dictionary, including the {@link #ESCAPE} symbol
+	 * unless every char was trained. ESCAPE is not a char, so the code's own
+	 * {@link CanonicalCode#decode(int[])} and {@link CanonicalCode#toTree()}
+	 * reject it; encodings of the dictionary are decoded with
+	 * {@link #decode(int[])}.
+	 *
+	 * @return The code
+	 */
+	public CanonicalCode getCode() {
+		return code;
+	}
+
+	/**
+	 * Determine if a character is written with an escape.
+	 *
+	 * @param c The character to look up
+	 * @return True if the character was not in the samples
+	 */
+	public boolean isEscaped(char c) {
+		return code.codeLength(c) == 0;
+	}
+
+	/**
+	 * Find the number of bits needed to encode a message.
+	 *
+	 * @param message The characters to measure
+	 * @return The number of bits in the encoding
+	 */
+	public long bitLength(CharSequence message) {
+		int escapeLength = code.codeLength(ESCAPE) + ESCAPED_BITS;
+		long length = 0;
+		for (int i = 0; i < message.length(); i++) {
+			int codeLength = code.codeLength(message.charAt(i));
+			if (codeLength == 0 && escapeLength == ESCAPED_BITS) {
+				throw new IllegalArgumentException("No code for character " + (int) message.charAt(i));
+			}
+			length += codeLength == 0 ? escapeLength : codeLength;
+		}
+		return length;
+	}
+
+	/**
+	 * Encode a message in the {numBits, bits, bits...} format of
+	 * {@link Encode#encodeBits(String, model.PriorityQueue.HuffmanNode)}. The
+	 * output array is sized exactly before any bits are written.
+	 *
+	 * @param message The string to convert to bits
+	 * @return An integer array of {numBits, bits, bits, bits...}
+	 */
+	public int[] encodeBits(String message) {
+		long length = bitLength(message);
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoding is longer than " + Integer.MAX_VALUE + " bits");
+		}
+
+		// Like Encode.encodeBits, an empty encoding still holds one word of bits
+		int[] bits = new int[Math.max(1, (int) ((length + Integer.SIZE - 1) / Integer.SIZE)) + 1];
+		bits[0] = (int) length;
+
+		// Bits waiting to be stored, right aligned; always fewer than 32
+		long pending = 0;
+		int pendingBits = 0;
+		int posInArr = 1;
+		for (int i = 0; i < message.length(); i++) {
+			char c = message.charAt(i);
+			int codeLength = code.codeLength(c);
+			if (codeLength == 0) {
+				// The escape and the raw character never total more than 48 bits
+				codeLength = code.codeLength(ESCAPE);
+				pending = pending << codeLength | (code.code(ESCAPE) & 0xFFFFFFFFL);
+				pendingBits += codeLength;
+				if (pendingBits >= Integer.SIZE) {
+					pendingBits -= Integer.SIZE;
+					bits[posInArr++] = (int) (pending >>> pendingBits);
+				}
+				pending = pending << ESCAPED_BITS | c;
+				pendingBits += ESCAPED_BITS;
+			} else {
+				pending = pending << codeLength | (code.code(c) & 0xFFFFFFFFL);
+				pendingBits += codeLength;
+			}
+
+			if (pendingBits >= Integer.SIZE) {
+				pendingBits -= Integer.SIZE;
+				bits[posInArr++] = (int) (pending >>> pendingBits);
+			}
+		}
+
+		if (pendingBits > 0) {
+			bits[posInArr] = (int) (pending << (Integer.SIZE - pendingBits));
+		}
+		return bits;
+	}
+
+	/**
+	 * Decode bits created by {@link #encodeBits(String)}.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @return The decoded String
+	 */
+	public String decode(int[] encoding) {
+		if (encoding.length == 0 || encoding[0] < 0
+				|| encoding.length - 1 < ((long) encoding[0] + Integer.SIZE - 1) / Integer.SIZE) {
+			throw new IllegalArgumentException("The array does not hold an encoding");
+		}
+
+		StringBuilder result = new StringBuilder();
+		long bitLength = encoding[0];
+		// The bits of the code read so far
+		long bits = 0;
+		int bitCount = 0;
+
+		for (long index = 0; index < bitLength; index++) {
+			bits = bits << 1 | readBit(encoding, index);
+			bitCount++;
+
+			int symbol = code.symbolFor(bits, bitCount);
+			if (symbol == ESCAPE) {
+				if (index + ESCAPED_BITS >= bitLength) {
+					throw new IllegalArgumentException("Encoding ends inside an escaped character");
+				}
+				int c = 0;
+				for (int bit = 0; bit < ESCAPED_BITS; bit++) {
+					c = c << 1 | readBit(encoding, ++index);
+				}
+				result.append((char) c);
+				bits = 0;
+				bitCount = 0;
+			} else if (symbol >= 0) {
+				result.append((char) symbol);
+				bits = 0;
+				bitCount = 0;
+			} else if (bitCount == CanonicalCode.MAX_CODE_LENGTH) {
+				throw new IllegalArgumentException("Encoding contains a code which is not in this dictionary");
+			}
+		}
+
+		return result.toString();
+	}
+
+	/**
+	 * Read one bit of an encoding.
+	 *
+	 * @param encoding The encoding, with its bits starting at index 1
+	 * @param index    The position of the bit
+	 * @return The bit, 0 or 1
+	 */
+	private static int readBit(int[] encoding, long index) {
+		return encoding[(int) (index >>> 5) + 1] >>> (31 - (index & 31)) & 0x1;
+	}
+
+	/**
+	 * Store the dictionary as the header of its canonical code.
+	 *
+	 * @return The dictionary as bytes
+	 */
+	public byte[] toBytes() {
+		return code.toHeader();
+	}
+
+	/**
+	 * Read a dictionary stored by {@link #toBytes()}.
+	 *
+	 * @param bytes The dictionary as bytes
+	 * @return The dictionary
+	 */
+	public static HuffmanDictionary fromBytes(byte[] bytes) {
+		return new HuffmanDictionary(CanonicalCode.fromHeader(bytes));
+	}
+
+	/**
+	 * Write the dictionary to a file, replacing the file if it exists.
+	 *
+	 * @param file The file to write
+	 * @throws IOException If the file cannot be written
+	 */
+	public void save(Path file) throws IOException {
+		Files.write(file, toBytes());
+	}
+
+	/**
+	 * Read a dictionary written by {@link #save(Path)}.
+	 *
+	 * @param file The file to read
+	 * @return The dictionary
+	 * @throws IOException If the file cannot be read
+	 */
+	public static HuffmanDictionary load(Path file) throws IOException {
+		return fromBytes(Files.readAllBytes(file));
+	}
+}
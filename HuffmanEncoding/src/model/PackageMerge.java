@@ -0,0 +1,175 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * Finds optimal Huffman code lengths which are no longer than a given limit,
+ * using the package-merge algorithm, and builds trees from code lengths.
+ *
+ * Package-merge treats each leaf as a coin whose face value is 2^-length and
+ * whose cost is its frequency. Starting from the deepest allowed level, the
+ * cheapest coins are paired into packages, the packages are merged with the
+ * leaves of the next level up, and so on to the root. The 2n - 2 cheapest items
+ * of the last level choose every code length: a leaf's code is one bit longer
+ * for each level it is chosen at. The cost is O(n * maxCodeLength) time and
+ * space.
+ *
+ * @author Andrew Dennison
+ */
+final class PackageMerge {
+
+	private PackageMerge() {
+	}
+
+	/**
+	 * Find the code lengths of the cheapest prefix code with no code longer than
+	 * maxCodeLength. Ties between equal frequencies go to the lower character.
+	 *
+	 * @param symbols       The characters to find code lengths for
+	 * @param frequencies   The frequency of each character
+	 * @param size          The number of characters to use from the array
+	 * @param maxCodeLength The longest code allowed
+	 * @return The code length of each character
+	 */
+	static int[] codeLengths(char[] symbols, long[] frequencies, int size, int maxCodeLength) {
+		if (maxCodeLength < 1) {
+			throw new IllegalArgumentException("maxCodeLength must be at least 1");
+		}
+		if (maxCodeLength < Integer.SIZE - 1 && (1 << maxCodeLength) < size) {
+			throw new IllegalArgumentException(
+					size + " characters cannot all have codes of at most " + maxCodeLength + " bits");
+		}
+
+		int[] lengths = new int[size];
+		if (size == 1) {
+			lengths[0] = 1;
+			return lengths;
+		}
+		if (size == 0) {
+			return lengths;
+		}
+
+		// Sort the leaves by frequency, then character
+		int[] leafIndices = FrequencyTable.sortByFrequency(symbols, frequencies, size);
+		long[] leafWeights = new long[size];
+		for (int i = 0; i < size; i++) {
+			leafWeights[i] = frequencies[leafIndices[i]];
+		}
+
+		// No code is ever longer than size - 1, so deeper levels add nothing
+		int levels = Math.min(maxCodeLength, size - 1);
+
+		// The items of each level, as a leaf index or -1 for a package
+		int[][] items = new int[levels][];
+		items[0] = leafIndices;
+		long[] weights = leafWeights;
+
+		for (int level = 1; level < levels; level++) {
+			int packages = weights.length / 2;
+			long[] merged = new long[size + packages];
+			int[] kinds = new int[size + packages];
+			int leaf = 0;
+			int pack = 0;
+
+			// Merge the leaves with packages of the level below, leaves first on ties
+			for (int i = 0; i < merged.length; i++) {
+				long packWeight = pack < packages ? weights[2 * pack] + weights[2 * pack + 1] : Long.MAX_VALUE;
+				if (leaf < size && leafWeights[leaf] <= packWeight) {
+					merged[i] = leafWeights[leaf];
+					kinds[i] = leafIndices[leaf++];
+				} else {
+					merged[i] = packWeight;
+					kinds[i] = -1;
+					pack++;
+				}
+			}
+
+			items[level] = kinds;
+			weights = merged;
+		}
+
+		// Packages are always made from a prefix of the level below, so choosing p
+		// packages chooses the first 2p items of that level
+		int chosen = 2 * size - 2;
+		for (int level = levels - 1; level >= 0; level--) {
+			int packages = 0;
+			for (int i = 0; i < chosen; i++) {
+				if (items[level][i] >= 0) {
+					lengths[items[level][i]]++;
+				} else {
+					packages++;
+				}
+			}
+			chosen = 2 * packages;
+		}
+
+		return lengths;
+	}
+
+	/**
+	 * Build the canonical Huffman tree for a set of code lengths. Shorter codes
+	 * are to the left, and codes of the same length are in order of character.
+	 * Interior nodes hold the sum of the frequencies below them.
+	 *
+	 * @param symbols     The characters to form leaves from
+	 * @param frequencies The frequency of each character
+	 * @param lengths     The code length of each character
+	 * @param size        The number of characters to use from the arrays
+	 * @return The root of the huffman tree, or null if size is 0
+	 */
+	static HuffmanNode buildTree(char[] symbols, long[] frequencies, int[] lengths, int size) {
+		if (size == 0) {
+			return null;
+		}
+		if (size == 1) {
+			return new HuffmanNode(frequencies[0], new HuffmanNode(symbols[0], frequencies[0]), null);
+		}
+
+		// Sort the leaves by code length, then character
+		long[] order = new long[size];
+		int maxLength = 0;
+		for (int i = 0; i < size; i++) {
+			order[i] = (long) lengths[i] << 48 | (long) symbols[i] << 32 | i;
+			maxLength = Math.max(maxLength, lengths[i]);
+		}
+		Arrays.sort(order);
+
+		// Build the tree from its deepest level up. Each level holds its leaves,
+		// then the parents made from the level below, from left to right.
+		ArrayList<HuffmanNode> parents = new ArrayList<>();
+		int next = size - 1;
+		for (int depth = maxLength; depth > 0; depth--) {
+			int first = next;
+			while (first >= 0 && (int) (order[first] >>> 48) == depth) {
+				first--;
+			}
+
+			ArrayList<HuffmanNode> level = new ArrayList<>(next - first + parents.size());
+			for (int i = first + 1; i <= next; i++) {
+				int index = (int) order[i];
+				level.add(new HuffmanNode(symbols[index], frequencies[index]));
+			}
+			level.addAll(parents);
+			next = first;
+
+			if (level.size() % 2 != 0) {
+				throw new IllegalArgumentException("The code lengths do not form a complete tree");
+			}
+
+			parents = new ArrayList<>(level.size() / 2);
+			for (int i = 0; i < level.size(); i += 2) {
+				HuffmanNode left = level.get(i);
+				HuffmanNode right = level.get(i + 1);
+				parents.add(new HuffmanNode(left.getFrequency() + right.getFrequency(), left, right));
+			}
+		}
+
+		if (next >= 0 || parents.size() != 1) {
+			throw new IllegalArgumentException("The code lengths do not form a complete tree");
+		}
+		return parents.get(0);
+	}
+}
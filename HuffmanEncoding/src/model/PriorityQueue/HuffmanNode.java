@@ -1,29 +1,91 @@
 //HuffmanNode.java
 package model.PriorityQueue;
 
+import java.util.Comparator;
+
 /**
  * A basic node for use in huffman encoding.
  * 
+ * Leaves and interior nodes are told apart by an explicit marker rather than by
+ * their character, so a leaf may hold any char, including '\0'.
+ * 
+ * Every node also has a sequence number to break ties between equal
+ * frequencies. A leaf's sequence is its char, and an interior node's sequence
+ * is given by the builder which made it.
+ * 
  * @author Chris Reid
  */
 public class HuffmanNode implements Comparable<HuffmanNode> {
 
+	/**
+	 * The first sequence number of interior nodes, after that of every char.
+	 */
+	public static final int FIRST_INTERIOR_SEQUENCE = Character.MAX_VALUE + 1;
+
+	/**
+	 * Orders nodes by frequency, then sequence number. When interior nodes are
+	 * numbered from {@link #FIRST_INTERIOR_SEQUENCE} in the order they are made,
+	 * ties go to leaves in order of char, then to interior nodes, oldest first, so
+	 * a tree built with this order depends only on the frequencies of its chars.
+	 */
+	public static final Comparator<HuffmanNode> DETERMINISTIC_ORDER = (node1, node2) -> {
+		int byFrequency = Long.compare(node1.frequency, node2.frequency);
+		return byFrequency != 0 ? byFrequency : Integer.compare(node1.sequence, node2.sequence);
+	};
+
 	char data;
-	int frequency;
+	long frequency;
 	HuffmanNode leftChild;
 	HuffmanNode rightChild;
+	boolean leaf;
+	int sequence;
 
 	/**
-	 * Create a new HuffmanNode with no children.
+	 * Create a new leaf HuffmanNode with no children. Giving it a child with
+	 * {@link #setLeftChild} or {@link #setRightChild} makes it an interior node.
 	 * 
 	 * @param newInput  Char this HuffmanNode represents
 	 * @param frequency The number of occurrences of this char.
 	 */
-	public HuffmanNode(char newInput, int frequency) {
+	public HuffmanNode(char newInput, long frequency) {
 		this.data = newInput;
 		this.frequency = frequency;
 		this.leftChild = null;
 		this.rightChild = null;
+		this.leaf = true;
+		this.sequence = newInput;
+	}
+
+	/**
+	 * Create a new interior HuffmanNode. An interior node stays interior even if
+	 * a child is null, and its char is always '\0'.
+	 * 
+	 * @param frequency  The sum of the frequencies below this node
+	 * @param leftChild  The node reached by a 0, or null
+	 * @param rightChild The node reached by a 1, or null
+	 */
+	public HuffmanNode(long frequency, HuffmanNode leftChild, HuffmanNode rightChild) {
+		this(frequency, leftChild, rightChild, FIRST_INTERIOR_SEQUENCE);
+	}
+
+	/**
+	 * Create a new interior HuffmanNode with a sequence number, for use with
+	 * {@link #DETERMINISTIC_ORDER}.
+	 * 
+	 * @param frequency  The sum of the frequencies below this node
+	 * @param leftChild  The node reached by a 0, or null
+	 * @param rightChild The node reached by a 1, or null
+	 * @param sequence   The sequence number, at least
+	 *                   {@link #FIRST_INTERIOR_SEQUENCE} and increasing with each
+	 *                   node made
+	 */
+	public HuffmanNode(long frequency, HuffmanNode leftChild, HuffmanNode rightChild, int sequence) {
+		this.data = '\0';
+		this.frequency = frequency;
+		this.leftChild = leftChild;
+		this.rightChild = rightChild;
+		this.leaf = false;
+		this.sequence = sequence;
 	}
 
 	/**
@@ -31,10 +93,19 @@ public class HuffmanNode implements Comparable<HuffmanNode> {
 	 * 
 	 * @return Frequency of the car
 	 */
-	public int getFrequency() {
+	public long getFrequency() {
 		return frequency;
 	}
 
+	/**
+	 * Get the sequence number used to break ties between equal frequencies.
+	 * 
+	 * @return The char of a leaf, or the sequence an interior node was made with
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
 	/**
 	 * Set the lesser child of this node
 	 * 
@@ -42,6 +113,7 @@ public class HuffmanNode implements Comparable<HuffmanNode> {
 	 */
 	public void setLeftChild(HuffmanNode leftNode) {
 		this.leftChild = leftNode;
+		this.leaf &= leftNode == null;
 	}
 
 	/**
@@ -51,11 +123,12 @@ public class HuffmanNode implements Comparable<HuffmanNode> {
 	 */
 	public void setRightChild(HuffmanNode rightNode) {
 		this.rightChild = rightNode;
+		this.leaf &= rightNode == null;
 	}
 
 	@Override
 	public int compareTo(HuffmanNode compared) {
-		return this.frequency - compared.frequency;
+		return Long.compare(this.frequency, compared.frequency);
 	}
 
 	/**
@@ -77,7 +150,7 @@ public class HuffmanNode implements Comparable<HuffmanNode> {
 	}
 
 	/**
-	 * Get the char this node represents
+	 * Get the char this node represents. Only meaningful for a leaf.
 	 * 
 	 * @return The char of this node.
 	 */
@@ -91,6 +164,6 @@ public class HuffmanNode implements Comparable<HuffmanNode> {
 	 * @return True if a leaf, false if a parent.
 	 */
 	public boolean isLeaf() {
-		return leftChild == null && rightChild == null;
+		return leaf;
 	}
 }
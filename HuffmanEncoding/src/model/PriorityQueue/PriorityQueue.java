@@ -1,19 +1,40 @@
 package model.PriorityQueue;
 
+import java.util.Comparator;
+
 /**
  * A priority queue implementation for HuffmanNode objects based on a min-heap.
  * 
+ * Nodes are ordered by {@link HuffmanNode#compareTo} unless another order is
+ * given, such as {@link HuffmanNode#DETERMINISTIC_ORDER}.
+ * 
  * @author Chris Reid
  */
 public class PriorityQueue {
 	private HuffmanNode[] minHeap;
 	private int size;
 	private int capacity;
+	private final Comparator<HuffmanNode> order;
 
 	public PriorityQueue(int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * Create a queue which orders its nodes with a comparator.
+	 * 
+	 * @param capacity The number of nodes to make room for
+	 * @param order    The order to pop nodes in, or null for their natural order
+	 */
+	public PriorityQueue(int capacity, Comparator<HuffmanNode> order) {
 		this.capacity = capacity;
 		this.minHeap = new HuffmanNode[capacity];
 		this.size = 0;
+		this.order = order;
+	}
+
+	private int compare(HuffmanNode node1, HuffmanNode node2) {
+		return order == null ? node1.compareTo(node2) : order.compare(node1, node2);
 	}
 
 	private int getParentIndex(int childIndex) {
@@ -71,7 +92,7 @@ public class PriorityQueue {
 
 	private void swimUp() {
 		int index = size - 1;
-		while (index > 0 && parent(index).compareTo(minHeap[index]) > 0) {
+		while (index > 0 && compare(parent(index), minHeap[index]) > 0) {
 			swap(index, getParentIndex(index));
 			index = getParentIndex(index);
 		}
@@ -102,10 +123,10 @@ public class PriorityQueue {
 		int index = 0;
 		while (hasLeftChild(index)) {
 			int smallerChildIndex = getLeftChildIndex(index);
-			if (hasRightChild(index) && rightChild(index).compareTo(leftChild(index)) < 0) {
+			if (hasRightChild(index) && compare(rightChild(index), leftChild(index)) < 0) {
 				smallerChildIndex = getRightChildIndex(index);
 			}
-			if (minHeap[index].compareTo(minHeap[smallerChildIndex]) <= 0) {
+			if (compare(minHeap[index], minHeap[smallerChildIndex]) <= 0) {
 				break; // Already in heap sorted order
 			}
 			swap(index, smallerChildIndex);
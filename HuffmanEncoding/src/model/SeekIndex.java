@@ -0,0 +1,129 @@
+package model;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * An index into the bits of an encoding created by
+ * {@link Encode#encodeBits(String, HuffmanNode)}, which allows a range of
+ * characters to be decoded without decoding everything before it.
+ *
+ * Every {@link #getInterval()} characters, the index records the bit offset
+ * at which the next character begins. Decoding characters N to M starts at the
+ * last sync point at or before N, so its cost is proportional to the size of
+ * the range plus at most one interval.
+ *
+ * The index can be stored next to the encoding with {@link #toArray()} and
+ * read back with {@link #fromArray(int[])}.
+ *
+ * @author Andrew Dennison
+ */
+public class SeekIndex {
+
+	/**
+	 * The number of characters between sync points when none is given.
+	 */
+	public static final int DEFAULT_INTERVAL = 4096;
+
+	private final int interval;
+	private final int length;
+	private final long[] offsets;
+
+	/**
+	 * Create an index from its sync points.
+	 *
+	 * @param interval The number of characters between sync points
+	 * @param length   The number of characters in the encoding
+	 * @param offsets  The bit offset of character i * interval, counted from the
+	 *                 first bit after the length header
+	 */
+	SeekIndex(int interval, int length, long[] offsets) {
+		this.interval = interval;
+		this.length = length;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * The number of characters between sync points.
+	 *
+	 * @return The interval of the index
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * The number of characters in the indexed encoding.
+	 *
+	 * @return The number of characters
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * The number of sync points.
+	 *
+	 * @return The number of sync points
+	 */
+	public int size() {
+		return offsets.length;
+	}
+
+	/**
+	 * Get the character index of a sync point.
+	 *
+	 * @param point The index of the sync point
+	 * @return The number of characters before the sync point
+	 */
+	public int getSymbolCount(int point) {
+		return point * interval;
+	}
+
+	/**
+	 * Get the bit offset of a sync point.
+	 *
+	 * @param point The index of the sync point
+	 * @return The position of the first bit of the character at the sync point,
+	 *         counted from the first bit after the length header
+	 */
+	public long getBitOffset(int point) {
+		return offsets[point];
+	}
+
+	/**
+	 * Store the index as ints, in the form {interval, length, size, offsets...}
+	 * with each offset stored as two ints, high half first.
+	 *
+	 * @return The index as an array of ints
+	 */
+	public int[] toArray() {
+		int[] array = new int[3 + 2 * offsets.length];
+		array[0] = interval;
+		array[1] = length;
+		array[2] = offsets.length;
+		for (int i = 0; i < offsets.length; i++) {
+			array[3 + 2 * i] = (int) (offsets[i] >>> Integer.SIZE);
+			array[4 + 2 * i] = (int) offsets[i];
+		}
+		return array;
+	}
+
+	/**
+	 * Read an index stored by {@link #toArray()}.
+	 *
+	 * @param array The index as an array of ints
+	 * @return The index
+	 */
+	public static SeekIndex fromArray(int[] array) {
+		if (array.length < 3 || array[0] < 1 || array[1] < 0 || array[2] != (array[1] + array[0] - 1) / array[0]
+				|| array.length != 3 + 2 * array[2]) {
+			throw new IllegalArgumentException("The array does not hold a seek index");
+		}
+
+		long[] offsets = new long[array[2]];
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = (long) array[3 + 2 * i] << Integer.SIZE | (array[4 + 2 * i] & 0xFFFFFFFFL);
+		}
+		return new SeekIndex(array[0], array[1], offsets);
+	}
+}
@@ -0,0 +1,114 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Provides decoding of streams written by {@link StreamEncoder} using a fixed
+ * amount of memory. The code is read from the start of the stream, so no tree
+ * needs to be supplied.
+ *
+ * @author Andrew Dennison
+ */
+public class StreamDecoder {
+
+	/**
+	 * Decode a stream and write the text to an output stream as UTF-8.
+	 *
+	 * @param in  The stream to read the encoding from
+	 * @param out The stream to write text to
+	 * @throws IOException If reading or writing fails, or the encoding is invalid
+	 */
+	public static void decode(InputStream in, OutputStream out) throws IOException {
+		decode(in, out, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decode a stream and write the text to an output stream in the given charset.
+	 *
+	 * @param in      The stream to read the encoding from
+	 * @param out     The stream to write text to
+	 * @param charset The charset to write text in
+	 * @throws IOException If reading or writing fails, or the encoding is invalid
+	 */
+	public static void decode(InputStream in, OutputStream out, Charset charset) throws IOException {
+		Writer writer = new OutputStreamWriter(out, charset);
+		decode(in, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Decode a channel and write the text to another channel as UTF-8.
+	 *
+	 * @param in  The channel to read the encoding from
+	 * @param out The channel to write text to
+	 * @throws IOException If reading or writing fails, or the encoding is invalid
+	 */
+	public static void decode(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		decode(Channels.newInputStream(in), Channels.newOutputStream(out));
+	}
+
+	/**
+	 * Decode a stream and write every character to a writer. Neither the stream
+	 * nor the writer is closed. The stream is read through a buffer, so bytes
+	 * after the end of the encoding may be consumed.
+	 *
+	 * @param in  The stream to read the encoding from
+	 * @param out The writer to write characters to
+	 * @throws IOException If reading or writing fails, or the encoding is invalid
+	 */
+	public static void decode(InputStream in, Writer out) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+
+		int headerLength = data.readInt();
+		if (headerLength < 0) {
+			throw new IOException("Invalid header length: " + headerLength);
+		}
+		byte[] header = new byte[headerLength];
+		data.readFully(header);
+
+		CanonicalCode code;
+		try {
+			code = CanonicalCode.fromHeader(header);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid header", e);
+		}
+
+		char[] chars = new char[StreamEncoder.FRAME_CHARS];
+		int[] bits = new int[StreamEncoder.FRAME_WORDS];
+
+		int numChars;
+		while ((numChars = data.readInt()) != 0) {
+			int numBits = data.readInt();
+			if (numChars < 0 || numChars > chars.length || numBits < 0 || numBits > bits.length * Integer.SIZE) {
+				throw new IOException("Invalid frame of " + numChars + " characters and " + numBits + " bits");
+			}
+
+			for (int i = 0; i < (numBits + Integer.SIZE - 1) / Integer.SIZE; i++) {
+				bits[i] = data.readInt();
+			}
+
+			int decoded;
+			try {
+				decoded = code.decode(bits, 0, numBits, chars);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid frame", e);
+			}
+			if (decoded != numChars) {
+				throw new IOException("Frame decoded to " + decoded + " characters instead of " + numChars);
+			}
+
+			out.write(chars, 0, decoded);
+		}
+	}
+}
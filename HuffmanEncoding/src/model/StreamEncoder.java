@@ -0,0 +1,236 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Provides Huffman encoding of character streams of any length using a fixed
+ * amount of memory.
+ *
+ * Input is read {@link #FRAME_CHARS} characters at a time and each group is
+ * written as one frame. The output begins with the header of the
+ * {@link CanonicalCode} used, so {@link StreamDecoder} needs nothing but the
+ * encoded stream:
+ *
+ * <pre>
+ * int headerLength, byte[headerLength] header
+ * repeated: int numChars, int numBits, int[(numBits + 31) / 32] bits
+ * int 0
+ * </pre>
+ *
+ * The code must contain every character of the input. Each frame is checked
+ * against the code before it is written, but the frames before it have already
+ * been written by then. A code for the whole input is built in one streaming
+ * pass by {@link #buildCode(Reader)}, and a file can be counted and then
+ * encoded in two passes with {@link #encode(Path, Charset, OutputStream)}.
+ *
+ * @author Andrew Dennison
+ */
+public class StreamEncoder {
+
+	/**
+	 * The number of characters encoded into each frame.
+	 */
+	public static final int FRAME_CHARS = 8192;
+
+	/**
+	 * The number of ints needed to hold the bits of the largest possible frame.
+	 */
+	static final int FRAME_WORDS = FRAME_CHARS * CanonicalCode.MAX_CODE_LENGTH / Integer.SIZE;
+
+	/**
+	 * Encode UTF-8 text read from an input stream.
+	 *
+	 * @param in   The stream to read text from
+	 * @param out  The stream to write the encoding to
+	 * @param code The code to encode characters with
+	 * @throws IOException              If reading or writing fails
+	 * @throws IllegalArgumentException If the code has no code for a character
+	 *                                  of the input
+	 */
+	public static void encode(InputStream in, OutputStream out, CanonicalCode code) throws IOException {
+		encode(in, StandardCharsets.UTF_8, out, code);
+	}
+
+	/**
+	 * Encode text in the given charset read from an input stream.
+	 *
+	 * @param in      The stream to read text from
+	 * @param charset The charset of the text
+	 * @param out     The stream to write the encoding to
+	 * @param code    The code to encode characters with
+	 * @throws IOException              If reading or writing fails
+	 * @throws IllegalArgumentException If the code has no code for a character
+	 *                                  of the input
+	 */
+	public static void encode(InputStream in, Charset charset, OutputStream out, CanonicalCode code)
+			throws IOException {
+		encode(new InputStreamReader(in, charset), out, code);
+	}
+
+	/**
+	 * Encode UTF-8 text read from a channel.
+	 *
+	 * @param in   The channel to read text from
+	 * @param out  The channel to write the encoding to
+	 * @param code The code to encode characters with
+	 * @throws IOException              If reading or writing fails
+	 * @throws IllegalArgumentException If the code has no code for a character
+	 *                                  of the input
+	 */
+	public static void encode(ReadableByteChannel in, WritableByteChannel out, CanonicalCode code)
+			throws IOException {
+		encode(Channels.newReader(in, StandardCharsets.UTF_8), Channels.newOutputStream(out), code);
+	}
+
+	/**
+	 * Encode every character read from a reader. Neither the reader nor the output
+	 * stream is closed.
+	 *
+	 * @param in   The reader to read characters from
+	 * @param out  The stream to write the encoding to
+	 * @param code The code to encode characters with
+	 * @throws IOException              If reading or writing fails
+	 * @throws IllegalArgumentException If the code has no code for a character
+	 *                                  of the input
+	 */
+	public static void encode(Reader in, OutputStream out, CanonicalCode code) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+
+		byte[] header = code.toHeader();
+		data.writeInt(header.length);
+		data.write(header);
+
+		char[] chars = new char[FRAME_CHARS];
+		CharBuffer charView = CharBuffer.wrap(chars);
+		int[] bits = new int[FRAME_WORDS];
+
+		long position = 0;
+		int numChars;
+		while ((numChars = fill(in, chars)) > 0) {
+			checkCodes(code, chars, numChars, position);
+			position += numChars;
+
+			int numBits = (int) code.encode(charView, 0, numChars, bits, 0);
+
+			data.writeInt(numChars);
+			data.writeInt(numBits);
+			for (int i = 0; i < (numBits + Integer.SIZE - 1) / Integer.SIZE; i++) {
+				data.writeInt(bits[i]);
+			}
+		}
+
+		data.writeInt(0);
+		data.flush();
+	}
+
+	/**
+	 * Count and then encode text in the given charset read from a file. The file
+	 * is read twice: once to build a code for every character in it with
+	 * {@link #buildCode(Reader)}, and once to encode it.
+	 *
+	 * @param in      The file to read text from
+	 * @param charset The charset of the text
+	 * @param out     The stream to write the encoding to
+	 * @throws IOException If reading or writing fails
+	 */
+	public static void encode(Path in, Charset charset, OutputStream out) throws IOException {
+		CanonicalCode code;
+		try (Reader reader = new InputStreamReader(Files.newInputStream(in), charset)) {
+			code = buildCode(reader);
+		}
+		try (Reader reader = new InputStreamReader(Files.newInputStream(in), charset)) {
+			encode(reader, out, code);
+		}
+	}
+
+	/**
+	 * Build a code for every character read from a reader, using a fixed amount of
+	 * memory however long the input is. No code is longer than
+	 * {@link CanonicalCode#MAX_CODE_LENGTH} bits. The reader is not closed.
+	 *
+	 * @param in The reader to read characters from
+	 * @return The code
+	 * @throws IOException If reading fails
+	 */
+	public static CanonicalCode buildCode(Reader in) throws IOException {
+		long[] frequencies = new long[Character.MAX_VALUE + 1];
+		char[] chars = new char[FRAME_CHARS];
+
+		int numChars;
+		while ((numChars = fill(in, chars)) > 0) {
+			for (int i = 0; i < numChars; i++) {
+				frequencies[chars[i]]++;
+			}
+		}
+
+		char[] symbols = new char[frequencies.length];
+		long[] counts = new long[frequencies.length];
+		int size = 0;
+		for (int c = 0; c < frequencies.length; c++) {
+			if (frequencies[c] > 0) {
+				symbols[size] = (char) c;
+				counts[size] = frequencies[c];
+				size++;
+			}
+		}
+
+		int[] lengths = PackageMerge.codeLengths(symbols, counts, size, CanonicalCode.MAX_CODE_LENGTH);
+		int[] codeSymbols = new int[size];
+		for (int i = 0; i < size; i++) {
+			codeSymbols[i] = symbols[i];
+		}
+		return CanonicalCode.fromLengths(codeSymbols, lengths);
+	}
+
+	/**
+	 * Check that every character of a frame has a code, before any of the frame
+	 * is written.
+	 *
+	 * @param code     The code to encode characters with
+	 * @param chars    The characters of the frame
+	 * @param numChars The number of characters in the frame
+	 * @param position The position of the frame in the input
+	 */
+	private static void checkCodes(CanonicalCode code, char[] chars, int numChars, long position) {
+		for (int i = 0; i < numChars; i++) {
+			if (code.codeLength(chars[i]) == 0) {
+				throw new IllegalArgumentException(
+						"No code for character " + (int) chars[i] + " at position " + (position + i));
+			}
+		}
+	}
+
+	/**
+	 * Read from a reader until the buffer is full or the input ends.
+	 *
+	 * @param in     The reader to read from
+	 * @param buffer The buffer to fill
+	 * @return The number of characters read, or 0 at the end of the input
+	 * @throws IOException If reading fails
+	 */
+	private static int fill(Reader in, char[] buffer) throws IOException {
+		int filled = 0;
+		while (filled < buffer.length) {
+			int read = in.read(buffer, filled, buffer.length - filled);
+			if (read < 0) {
+				break;
+			}
+			filled += read;
+		}
+		return filled;
+	}
+}
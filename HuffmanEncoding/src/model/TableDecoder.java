@@ -0,0 +1,558 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * Decodes Huffman-encoded bits several bits at a time using lookup tables built
+ * once from a Huffman tree.
+ *
+ * Every code of at most {@code tableBits} bits is resolved by a single table
+ * lookup. Longer codes use the table to skip the first {@code tableBits} bits
+ * and then walk the remaining bits down a {@link FlatHuffmanTree} one at a
+ * time.
+ *
+ * The output is the same as {@link Decode#decode(String, HuffmanNode)} and
+ * {@link Decode#decode(int[], HuffmanNode)} for the same tree. A TableDecoder is
+ * never modified after construction, so one instance may be shared by many
+ * threads.
+ *
+ * @author Andrew Dennison
+ */
+public class TableDecoder {
+
+	/**
+	 * The number of bits resolved per lookup when none is given.
+	 */
+	public static final int DEFAULT_TABLE_BITS = 10;
+
+	/**
+	 * The largest number of bits a lookup table may be indexed by.
+	 */
+	public static final int MAX_TABLE_BITS = 16;
+
+	// The number of characters decoded at a time for sinks without an array
+	private static final int CHUNK_CHARS = 4096;
+
+	private final FlatHuffmanTree tree;
+	private final int root;
+	private final int tableBits;
+	private final int mask;
+
+	// The symbol decoded by each table entry
+	private final char[] symbols;
+	// The number of bits each table entry consumes, or 0 if the code is longer
+	private final byte[] lengths;
+	// The interior node reached after tableBits bits, for codes longer than
+	// tableBits, or FlatHuffmanTree.NONE if the tree has no such node
+	private final int[] fallback;
+
+	/**
+	 * Build a decoder for the given tree which resolves up to
+	 * {@link #DEFAULT_TABLE_BITS} bits per lookup.
+	 *
+	 * @param root The root of the Huffman tree
+	 */
+	public TableDecoder(HuffmanNode root) {
+		this(root, DEFAULT_TABLE_BITS);
+	}
+
+	/**
+	 * Build a decoder for the given tree which resolves up to tableBits bits per
+	 * lookup. The table is never made wider than the deepest leaf of the tree.
+	 *
+	 * @param root      The root of the Huffman tree
+	 * @param tableBits The maximum number of bits resolved per lookup
+	 */
+	public TableDecoder(HuffmanNode root, int tableBits) {
+		this(FlatHuffmanTree.fromTree(root), tableBits);
+	}
+
+	/**
+	 * Build a decoder for a flattened tree which resolves up to
+	 * {@link #DEFAULT_TABLE_BITS} bits per lookup.
+	 *
+	 * @param tree The Huffman tree
+	 */
+	public TableDecoder(FlatHuffmanTree tree) {
+		this(tree, DEFAULT_TABLE_BITS);
+	}
+
+	/**
+	 * Build a decoder for a flattened tree which resolves up to tableBits bits
+	 * per lookup. The table is never made wider than the deepest leaf of the
+	 * tree.
+	 *
+	 * @param tree      The Huffman tree
+	 * @param tableBits The maximum number of bits resolved per lookup
+	 */
+	public TableDecoder(FlatHuffmanTree tree, int tableBits) {
+		if (tableBits < 1 || tableBits > MAX_TABLE_BITS) {
+			throw new IllegalArgumentException("tableBits must be between 1 and " + MAX_TABLE_BITS);
+		}
+
+		this.tree = tree;
+		this.root = tree.getRoot();
+		this.tableBits = root < 0 ? 1 : Math.max(1, Math.min(tableBits, tree.getDepth()));
+		this.mask = (1 << this.tableBits) - 1;
+		this.symbols = new char[1 << this.tableBits];
+		this.lengths = new byte[1 << this.tableBits];
+		this.fallback = new int[1 << this.tableBits];
+
+		Arrays.fill(fallback, FlatHuffmanTree.NONE);
+		if (root >= 0) {
+			fillTable(root, 0, 0);
+		}
+	}
+
+	/**
+	 * Recursively fill every table entry whose index begins with the given code.
+	 *
+	 * @param node  The reference to the node reached by following code from the
+	 *              root
+	 * @param code  The bits traveled so far
+	 * @param depth The number of bits in code
+	 */
+	private void fillTable(int node, int code, int depth) {
+		if (node == FlatHuffmanTree.NONE) {
+			return; // Entries stay empty and are reported as an invalid tree
+		}
+
+		if (FlatHuffmanTree.isLeaf(node)) {
+			// Every index starting with this code decodes to this leaf
+			int first = code << (tableBits - depth);
+			int count = 1 << (tableBits - depth);
+			for (int i = first; i < first + count; i++) {
+				symbols[i] = tree.getData(node);
+				lengths[i] = (byte) depth;
+			}
+		} else if (depth == tableBits) {
+			fallback[code] = node;
+		} else {
+			fillTable(tree.getLeftChild(node), code << 1, depth + 1);
+			fillTable(tree.getRightChild(node), (code << 1) | 1, depth + 1);
+		}
+	}
+
+	/**
+	 * Decode a String of 1s and 0s. Any character other than '0' is read as a 1.
+	 *
+	 * @param encoding String representation of 0s and 1s for the encoded data
+	 * @return The decoded String, or {@link Decode#ERROR_MESSAGE} if the tree
+	 *         cannot decode the input
+	 */
+	public String decode(String encoding) {
+		if (root == FlatHuffmanTree.NONE) {
+			return Decode.ERROR_MESSAGE;
+		}
+		if (encoding.isEmpty()) {
+			return "";
+		}
+		if (root < 0) {
+			return Decode.ERROR_MESSAGE;
+		}
+
+		int length = encoding.length();
+		StringBuilder result = new StringBuilder();
+		int index = 0;
+
+		while (index < length) {
+			int entry = peek(encoding, index);
+			int codeLength = lengths[entry];
+
+			if (codeLength > 0) {
+				// The final code was cut off; the tree walk would stop here as well
+				if (index + codeLength > length) {
+					break;
+				}
+				result.append(symbols[entry]);
+				index += codeLength;
+				continue;
+			}
+
+			int currNode = fallback[entry];
+			if (currNode == FlatHuffmanTree.NONE) {
+				return Decode.ERROR_MESSAGE;
+			}
+
+			// Walk the rest of a long code one bit at a time
+			index += tableBits;
+			while (index < length && currNode >= 0) {
+				currNode = tree.getChild(currNode, encoding.charAt(index) == '0' ? 0 : 1);
+				if (currNode == FlatHuffmanTree.NONE) {
+					return Decode.ERROR_MESSAGE;
+				}
+				index++;
+			}
+
+			if (currNode < 0) {
+				result.append(tree.getData(currNode));
+			}
+		}
+
+		return result.toString();
+	}
+
+	/**
+	 * Decode a contiguous block of bits stored in ints, in the same format as
+	 * {@link Encode#encodeBits(String, HuffmanNode)}.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @return The decoded String, or {@link Decode#ERROR_MESSAGE} if the tree
+	 *         cannot decode the input
+	 */
+	public String decode(int[] encoding) {
+		if (root == FlatHuffmanTree.NONE) {
+			return Decode.ERROR_MESSAGE;
+		}
+
+		StringBuilder result = new StringBuilder();
+		try {
+			decode(encoding, result);
+		} catch (IllegalArgumentException e) {
+			return Decode.ERROR_MESSAGE;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // A StringBuilder never throws
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Decode bits in the format of {@link Encode#encodeBits(String, HuffmanNode)}
+	 * straight into an array, without building a String.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param dst      The array to store decoded characters in
+	 * @param dstOff   The index to store the first character at
+	 * @return The number of characters decoded
+	 * @throws IndexOutOfBoundsException if dst has too little room after dstOff
+	 * @throws IllegalArgumentException  if the tree cannot decode the encoding
+	 */
+	public int decode(int[] encoding, char[] dst, int dstOff) {
+		return decode(encoding, dst, dstOff, new long[1]);
+	}
+
+	/**
+	 * Decode bits in the format of {@link Encode#encodeBits(String, HuffmanNode)}
+	 * into an array, using a caller-owned array to track the position, so that
+	 * nothing is allocated.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param dst      The array to store decoded characters in
+	 * @param dstOff   The index to store the first character at
+	 * @param position A single element array to hold the position while decoding
+	 * @return The number of characters decoded
+	 */
+	int decode(int[] encoding, char[] dst, int dstOff, long[] position) {
+		if (dstOff < 0 || dstOff > dst.length) {
+			throw new IndexOutOfBoundsException("Offset " + dstOff + " is outside of 0.." + dst.length);
+		}
+
+		position[0] = start(encoding);
+		long bitEnd = end(encoding);
+		int count = decode(encoding, position, bitEnd, dst, dstOff, dst.length - dstOff);
+		if (position[0] < bitEnd) {
+			throw new IndexOutOfBoundsException("The array has room for only " + count + " characters");
+		}
+		return count;
+	}
+
+	/**
+	 * Decode bits in the format of {@link Encode#encodeBits(String, HuffmanNode)}
+	 * into a buffer, starting at its position. The position is advanced past the
+	 * last character decoded.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param dst      The buffer to store decoded characters in
+	 * @throws BufferOverflowException  if dst has too little room remaining
+	 * @throws IllegalArgumentException if the tree cannot decode the encoding
+	 */
+	public void decode(int[] encoding, CharBuffer dst) {
+		long[] position = { start(encoding) };
+		long bitEnd = end(encoding);
+
+		if (dst.hasArray()) {
+			int count = decode(encoding, position, bitEnd, dst.array(), dst.arrayOffset() + dst.position(),
+					dst.remaining());
+			if (position[0] < bitEnd) {
+				throw new BufferOverflowException();
+			}
+			dst.position(dst.position() + count);
+			return;
+		}
+
+		// Direct and read-only views are filled a chunk at a time
+		char[] chunk = new char[Math.min(CHUNK_CHARS, dst.remaining() + 1)];
+		while (position[0] < bitEnd) {
+			int count = decode(encoding, position, bitEnd, chunk, 0, chunk.length);
+			dst.put(chunk, 0, count);
+		}
+	}
+
+	/**
+	 * Decode bits in the format of {@link Encode#encodeBits(String, HuffmanNode)}
+	 * into any sink of characters, such as a StringBuilder or Writer. Characters
+	 * are appended a chunk at a time, so the whole result is never held in memory.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @param dst      The sink to append decoded characters to
+	 * @throws IOException              if the sink cannot be appended to
+	 * @throws IllegalArgumentException if the tree cannot decode the encoding
+	 */
+	public void decode(int[] encoding, Appendable dst) throws IOException {
+		long[] position = { start(encoding) };
+		long bitEnd = end(encoding);
+		char[] chunk = new char[(int) Math.min(CHUNK_CHARS, bitEnd - position[0] + 1)];
+
+		while (position[0] < bitEnd) {
+			int count = decode(encoding, position, bitEnd, chunk, 0, chunk.length);
+			if (dst instanceof StringBuilder) {
+				((StringBuilder) dst).append(chunk, 0, count);
+			} else if (dst instanceof Writer) {
+				((Writer) dst).write(chunk, 0, count);
+			} else {
+				dst.append(CharBuffer.wrap(chunk, 0, count));
+			}
+		}
+	}
+
+	/**
+	 * Find where decoding of bits in the format of
+	 * {@link Encode#encodeBits(String, HuffmanNode)} begins, checking that this
+	 * decoder can decode them.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @return The position of the first bit, counted from the first bit of
+	 *         encoding[0]
+	 */
+	private long start(int[] encoding) {
+		if (root == FlatHuffmanTree.NONE) {
+			throw new IllegalArgumentException(Decode.ERROR_MESSAGE);
+		}
+		if (root < 0 && encoding[0] != 0) {
+			throw new IllegalArgumentException("The tree cannot decode the encoding");
+		}
+		return Integer.SIZE;
+	}
+
+	/**
+	 * Find the position after the last bit of an encoding in the format of
+	 * {@link Encode#encodeBits(String, HuffmanNode)}.
+	 *
+	 * @param encoding The integer array representing the bits of the encoding
+	 * @return The position after the last bit, counted from the first bit of
+	 *         encoding[0]
+	 */
+	private static long end(int[] encoding) {
+		return Integer.SIZE + Math.max(0, encoding[0]);
+	}
+
+	/**
+	 * Decode a known number of characters from bits stored in ints, most
+	 * significant bit first, into a destination array. A tree of a single leaf
+	 * decodes to numChars copies of its character.
+	 *
+	 * @param src      The encoded bits
+	 * @param bitIndex The position of the first bit to decode, counted from the
+	 *                 first bit of src[0]
+	 * @param bitEnd   The position after the last bit which may be decoded
+	 * @param dst      The array to store decoded characters in
+	 * @param dstOff   The index to store the first character at
+	 * @param numChars The number of characters to decode
+	 * @return The position after the last bit decoded
+	 */
+	long decode(int[] src, long bitIndex, long bitEnd, char[] dst, int dstOff, int numChars) {
+		if (root == FlatHuffmanTree.NONE) {
+			throw new IllegalArgumentException(Decode.ERROR_MESSAGE);
+		}
+		if (root < 0) {
+			Arrays.fill(dst, dstOff, dstOff + numChars, tree.getData(root));
+			return bitIndex;
+		}
+
+		long[] position = { bitIndex };
+		if (decode(src, position, bitEnd, dst, dstOff, numChars) < numChars) {
+			throw new IllegalArgumentException("Encoding ends before " + numChars + " characters were decoded");
+		}
+		return position[0];
+	}
+
+	/**
+	 * Decode characters from bits stored in ints, most significant bit first,
+	 * until either maxChars characters are decoded or the bits run out. A final
+	 * code cut off by bitEnd is treated as padding.
+	 *
+	 * @param src      The encoded bits
+	 * @param position A single element array holding the position of the first
+	 *                 bit to decode, counted from the first bit of src[0]. It is
+	 *                 advanced past the last bit decoded.
+	 * @param bitEnd   The position after the last bit which may be decoded
+	 * @param dst      The array to store decoded characters in
+	 * @param dstOff   The index to store the first character at
+	 * @param maxChars The most characters to decode
+	 * @return The number of characters decoded
+	 */
+	private int decode(int[] src, long[] position, long bitEnd, char[] dst, int dstOff, int maxChars) {
+		if (root < 0) {
+			return 0; // Checked by every caller to have nothing to decode
+		}
+
+		long index = position[0];
+		int i = dstOff;
+		int end = dstOff + maxChars;
+
+		while (index < bitEnd && i < end) {
+			int entry = peek(src, index);
+			int codeLength = lengths[entry];
+
+			if (codeLength > 0) {
+				// The remaining bits are padding rather than a full code
+				if (index + codeLength > bitEnd) {
+					index = bitEnd;
+					break;
+				}
+				dst[i++] = symbols[entry];
+				index += codeLength;
+				continue;
+			}
+
+			int currNode = fallback[entry];
+			if (currNode == FlatHuffmanTree.NONE) {
+				throw new IllegalArgumentException("The tree cannot decode the encoding");
+			}
+
+			// Walk the rest of a long code one bit at a time
+			index += tableBits;
+			while (index < bitEnd && currNode >= 0) {
+				currNode = tree.getChild(currNode, src[(int) (index >>> 5)] >>> (31 - (index & 31)) & 0x1);
+				if (currNode == FlatHuffmanTree.NONE) {
+					throw new IllegalArgumentException("The tree cannot decode the encoding");
+				}
+				index++;
+			}
+
+			if (currNode < 0) {
+				dst[i++] = tree.getData(currNode);
+			}
+		}
+
+		position[0] = Math.min(index, bitEnd);
+		return i - dstOff;
+	}
+
+	/**
+	 * Decode a known number of characters from bits stored in longs, most
+	 * significant bit first, into a destination array. A tree of a single leaf
+	 * decodes to numChars copies of its character.
+	 *
+	 * @param src      The encoded bits
+	 * @param bitIndex The position of the first bit to decode, counted from the
+	 *                 first bit of src[0]
+	 * @param bitEnd   The position after the last bit which may be decoded
+	 * @param dst      The array to store decoded characters in
+	 * @param dstOff   The index to store the first character at
+	 * @param numChars The number of characters to decode
+	 * @return The position after the last bit decoded
+	 */
+	long decode(long[] src, long bitIndex, long bitEnd, char[] dst, int dstOff, int numChars) {
+		if (root == FlatHuffmanTree.NONE) {
+			throw new IllegalArgumentException(Decode.ERROR_MESSAGE);
+		}
+		if (root < 0) {
+			Arrays.fill(dst, dstOff, dstOff + numChars, tree.getData(root));
+			return bitIndex;
+		}
+
+		long index = bitIndex;
+		for (int i = dstOff; i < dstOff + numChars; i++) {
+			int entry = peek(src, index);
+			int codeLength = lengths[entry];
+
+			if (codeLength > 0) {
+				dst[i] = symbols[entry];
+				index += codeLength;
+			} else {
+				int currNode = fallback[entry];
+				index += tableBits;
+
+				// Walk the rest of a long code one bit at a time
+				while (currNode >= 0 && index < bitEnd) {
+					currNode = tree.getChild(currNode, (int) (src[(int) (index >>> 6)] >>> (63 - (index & 63))) & 0x1);
+					index++;
+				}
+
+				if (!FlatHuffmanTree.isLeaf(currNode)) {
+					throw new IllegalArgumentException("The tree cannot decode the encoding");
+				}
+				dst[i] = tree.getData(currNode);
+			}
+
+			if (index > bitEnd) {
+				throw new IllegalArgumentException("Encoding ends before " + numChars + " characters were decoded");
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Read the next tableBits bits of a String of 1s and 0s, padding with 0s past
+	 * the end.
+	 *
+	 * @param encoding The String of 1s and 0s
+	 * @param index    The position of the first bit to read
+	 * @return The bits read, most significant first
+	 */
+	private int peek(String encoding, int index) {
+		int bits = 0;
+		int end = Math.min(index + tableBits, encoding.length());
+		for (int i = index; i < end; i++) {
+			bits = (bits << 1) | (encoding.charAt(i) == '0' ? 0 : 1);
+		}
+		return bits << (index + tableBits - end);
+	}
+
+	/**
+	 * Read the next tableBits bits from ints holding bits most significant first,
+	 * padding with 0s past the end.
+	 *
+	 * @param src   The encoded bits
+	 * @param index The position of the first bit to read, counted from the first
+	 *              bit of src[0]
+	 * @return The bits read, most significant first
+	 */
+	private int peek(int[] src, long index) {
+		int word = (int) (index >>> 5);
+		long high = word < src.length ? src[word] & 0xFFFFFFFFL : 0;
+		long low = word + 1 < src.length ? src[word + 1] & 0xFFFFFFFFL : 0;
+		long window = high << Integer.SIZE | low;
+		return (int) (window >>> (Long.SIZE - (index & 31) - tableBits)) & mask;
+	}
+
+	/**
+	 * Read the next tableBits bits from longs holding bits most significant first,
+	 * padding with 0s past the end.
+	 *
+	 * @param src   The encoded bits
+	 * @param index The position of the first bit to read, counted from the first
+	 *              bit of src[0]
+	 * @return The bits read, most significant first
+	 */
+	private int peek(long[] src, long index) {
+		int word = (int) (index >>> 6);
+		int offset = (int) (index & 63);
+		long window = word < src.length ? src[word] << offset : 0;
+
+		// Take the rest of the bits from the next long when they straddle two
+		if (offset + tableBits > Long.SIZE && word + 1 < src.length) {
+			window |= src[word + 1] >>> (Long.SIZE - offset);
+		}
+		return (int) (window >>> (Long.SIZE - tableBits));
+	}
+}
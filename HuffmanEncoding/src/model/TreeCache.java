@@ -0,0 +1,269 @@
+package model;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * A bounded cache of Huffman trees and their CodeBooks, keyed by the
+ * frequencies of the input they were built for.
+ *
+ * Inputs with the same characters in the same queue order and with the same
+ * frequencies build the same tree, so repeated message shapes only count their
+ * characters and look up a fingerprint of the counts. The fingerprint selects a
+ * hash bucket, and the full counts are compared before an entry is returned,
+ * so two different histograms never share a tree.
+ *
+ * Entries are evicted in least recently used order once the cache holds its
+ * capacity. All methods may be called by many threads at once. Trees are built
+ * outside of the lock, so a slow build never blocks lookups by other threads.
+ * The trees handed out are shared, so callers must not modify them.
+ *
+ * @author Andrew Dennison
+ */
+public final class TreeCache {
+
+	/**
+	 * The number of entries held when no capacity is given.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final int capacity;
+	private final Function<FrequencyTable, HuffmanNode> builder;
+	private final LinkedHashMap<Key, Entry> entries;
+
+	// Guarded by entries
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Create a cache of {@link #DEFAULT_CAPACITY} trees built by
+	 * {@link Encode#buildHuffmanTree(FrequencyTable)}.
+	 */
+	public TreeCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a cache of trees built by
+	 * {@link Encode#buildHuffmanTree(FrequencyTable)}.
+	 *
+	 * @param capacity The largest number of trees to hold
+	 */
+	public TreeCache(int capacity) {
+		this(capacity, Encode::buildHuffmanTree);
+	}
+
+	/**
+	 * Create a cache of trees built by any builder, such as
+	 * {@link Encode#buildDeterministicHuffmanTree(FrequencyTable)}.
+	 *
+	 * @param capacity The largest number of trees to hold
+	 * @param builder  Builds the tree for a table of frequencies
+	 */
+	public TreeCache(int capacity, Function<FrequencyTable, HuffmanNode> builder) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.capacity = capacity;
+		this.builder = builder;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				if (size() > TreeCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get the tree and codes for an input, building them if the frequencies of
+	 * the input have not been seen recently.
+	 *
+	 * @param input The input to be encoded
+	 * @return The tree and codes of the input
+	 */
+	public Entry get(CharSequence input) {
+		return get(FrequencyTable.count(input));
+	}
+
+	/**
+	 * Get the tree and codes for a table of frequencies, building them if the
+	 * table has not been seen recently.
+	 *
+	 * @param frequencies The frequency of each character
+	 * @return The tree and codes of the frequencies
+	 */
+	public Entry get(FrequencyTable frequencies) {
+		Key key = new Key(frequencies);
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				hits++;
+				return entry;
+			}
+			misses++;
+		}
+
+		HuffmanNode root = builder.apply(frequencies);
+		Entry built = new Entry(root, root == null ? null : CodeBook.fromTree(root));
+
+		synchronized (entries) {
+			// Another thread may have built the same tree in the meantime
+			Entry entry = entries.putIfAbsent(key, built);
+			return entry == null ? built : entry;
+		}
+	}
+
+	/**
+	 * The number of lookups which found a tree.
+	 *
+	 * @return The number of hits
+	 */
+	public long getHits() {
+		synchronized (entries) {
+			return hits;
+		}
+	}
+
+	/**
+	 * The number of lookups which had to build a tree.
+	 *
+	 * @return The number of misses
+	 */
+	public long getMisses() {
+		synchronized (entries) {
+			return misses;
+		}
+	}
+
+	/**
+	 * The number of trees removed to stay within capacity.
+	 *
+	 * @return The number of evictions
+	 */
+	public long getEvictions() {
+		synchronized (entries) {
+			return evictions;
+		}
+	}
+
+	/**
+	 * The number of trees held.
+	 *
+	 * @return The number of entries
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * The largest number of trees held.
+	 *
+	 * @return The capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Remove every tree. The counters are kept.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * A cached tree and the codes read from it.
+	 */
+	public static final class Entry {
+		private final HuffmanNode root;
+		private final CodeBook codes;
+
+		/**
+		 * Create an entry.
+		 *
+		 * @param root  The root of the tree
+		 * @param codes The codes of the tree, or null for an empty tree
+		 */
+		private Entry(HuffmanNode root, CodeBook codes) {
+			this.root = root;
+			this.codes = codes;
+		}
+
+		/**
+		 * The root of the tree. Shared with the cache, so callers must not modify
+		 * it.
+		 *
+		 * @return The root, or null for an empty input
+		 */
+		public HuffmanNode getRoot() {
+			return root;
+		}
+
+		/**
+		 * The codes of the tree.
+		 *
+		 * @return The codes, or null for an empty input
+		 */
+		public CodeBook getCodeBook() {
+			return codes;
+		}
+	}
+
+	/**
+	 * The characters and frequencies of a table, with a 64-bit fingerprint
+	 * computed once.
+	 */
+	private static final class Key {
+		private final char[] symbols;
+		private final long[] frequencies;
+		private final long fingerprint;
+
+		/**
+		 * Create a key from a table. The table's arrays are never modified, so
+		 * they are shared rather than copied.
+		 *
+		 * @param table The frequencies to key on
+		 */
+		Key(FrequencyTable table) {
+			symbols = table.symbols();
+			frequencies = table.frequencies();
+
+			long hash = symbols.length;
+			for (int i = 0; i < symbols.length; i++) {
+				hash = (hash ^ symbols[i]) * 0x9E3779B97F4A7C15L;
+				hash = (hash ^ frequencies[i]) * 0x9E3779B97F4A7C15L;
+			}
+			fingerprint = hash ^ hash >>> 32;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) fingerprint;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return fingerprint == other.fingerprint && Arrays.equals(symbols, other.symbols)
+					&& Arrays.equals(frequencies, other.frequencies);
+		}
+	}
+}
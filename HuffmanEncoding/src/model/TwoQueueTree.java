@@ -0,0 +1,72 @@
+package model;
+
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * Builds Huffman trees in linear time after a single sort of the leaves, using
+ * two queues instead of a heap.
+ *
+ * The first queue holds the leaves in order of frequency. The second holds the
+ * merged nodes in the order they were made, which is also in order of
+ * frequency, because each merge is at least as large as the one before. The
+ * two smallest nodes are therefore always at the fronts of the queues.
+ *
+ * Ties are broken the same way every time: leaves are ordered by frequency then
+ * character, a leaf comes before a merged node of the same frequency, and
+ * merged nodes come in the order they were made. The first node taken becomes
+ * the left child. This is the order of {@link HuffmanNode#DETERMINISTIC_ORDER},
+ * so the tree is the same as the heap builds with that order.
+ *
+ * @author Andrew Dennison
+ */
+final class TwoQueueTree {
+
+	private TwoQueueTree() {
+	}
+
+	/**
+	 * Build a huffman tree from characters and their frequencies.
+	 *
+	 * @param symbols     The characters to form leaves from
+	 * @param frequencies The frequency of each character
+	 * @param size        The number of characters to use from the arrays
+	 * @return The root of the huffman tree, or null if size is 0. The root is
+	 *         always an interior node, so a single character still gets a
+	 *         1 bit code.
+	 */
+	static HuffmanNode build(char[] symbols, long[] frequencies, int size) {
+		if (size == 0) {
+			return null;
+		}
+
+		// Sort the leaves by frequency, then character
+		int[] order = FrequencyTable.sortByFrequency(symbols, frequencies, size);
+		HuffmanNode[] leaves = new HuffmanNode[size];
+		for (int i = 0; i < size; i++) {
+			leaves[i] = new HuffmanNode(symbols[order[i]], frequencies[order[i]]);
+		}
+		if (size == 1) {
+			return new HuffmanNode(leaves[0].getFrequency(), leaves[0], null);
+		}
+
+		// Merged nodes are queued in the order they are made
+		HuffmanNode[] merged = new HuffmanNode[size - 1];
+		int nextLeaf = 0;
+		int nextMerged = 0;
+
+		for (int made = 0; made < size - 1; made++) {
+			boolean leftLeaf = nextMerged == made
+					|| (nextLeaf < size && leaves[nextLeaf].getFrequency() <= merged[nextMerged].getFrequency());
+			HuffmanNode left = leftLeaf ? leaves[nextLeaf++] : merged[nextMerged++];
+
+			boolean rightLeaf = nextMerged == made
+					|| (nextLeaf < size && leaves[nextLeaf].getFrequency() <= merged[nextMerged].getFrequency());
+			HuffmanNode right = rightLeaf ? leaves[nextLeaf++] : merged[nextMerged++];
+
+			merged[made] = new HuffmanNode(left.getFrequency() + right.getFrequency(), left, right,
+					HuffmanNode.FIRST_INTERIOR_SEQUENCE + made);
+		}
+
+		return merged[size - 2];
+	}
+}
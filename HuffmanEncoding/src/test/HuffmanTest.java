@@ -2,13 +2,59 @@ package test;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
+import model.ByteDecode;
+import model.ByteEncode;
+import model.CanonicalCode;
+import model.CodeBook;
 import model.Decode;
+import model.EncodedBatch;
+import model.EncodedBits;
+import model.EncodedBlocks;
 import model.Encode;
+import model.FlatHuffmanTree;
+import model.FrequencyTable;
+import model.HuffmanCodec;
+import model.HuffmanContext;
+import model.HuffmanDictionary;
+import model.SeekIndex;
+import model.StreamDecoder;
+import model.StreamEncoder;
+import model.TableDecoder;
+import model.TreeCache;
+import model.HashTable.CharIntMap;
 import model.HashTable.HashTable;
 import model.PriorityQueue.HuffmanNode;
 import model.PriorityQueue.PriorityQueue;
@@ -191,7 +237,7 @@ public class HuffmanTest {
 	@Test
 	public void testAHugeNumberOfChars() {
 		StringBuilder sb = new StringBuilder();
-		Random r = new Random(System.currentTimeMillis());
+		Random r = new Random(2024);
 
 		for (int i = 0; i < 10000; i++) { // Create a String of 10000 random chars
 			sb.append((char) r.nextInt(50, 100));
@@ -206,18 +252,28 @@ public class HuffmanTest {
 	}
 
 	@Test
-	public void testNullChars() { // Null chars are invalid as they are used for internal nodes
-		String input = "\0";
+	public void testNullChars() { // Null chars are leaves like any other char
+		String[] inputs = { "\0", "\0\0\0", "a\0b\0\0c", "\0\uFFFF\0\u0001", "aaaa" };
 
-		HuffmanNode root = Encode.buildHuffmanTree(input);
-		String encodeString = Encode.encodeString(input, root);
-		int[] encodedBits = Encode.encodeBits(input, root);
+		for (String input : inputs) {
+			HuffmanNode root = Encode.buildHuffmanTree(input);
+			String encodeString = Encode.encodeString(input, root);
+			int[] encodedBits = Encode.encodeBits(input, root);
 
-		String decodedString = Decode.decode(encodeString, root);
-		String decodedBits = Decode.decode(encodedBits, root);
+			// Even a single distinct character gets a 1 bit code
+			assertTrue(encodeString.length() >= input.length());
+			assertEquals(input, Decode.decode(encodeString, root));
+			assertEquals(input, Decode.decode(encodedBits, root));
+			assertEquals(input, new TableDecoder(root).decode(encodedBits));
+			assertEquals(input, Decode.decode(encodedBits, FlatHuffmanTree.fromTree(root)));
+			assertEquals(input, Decode.decode(Encode.encodeWords(input, root), root));
+		}
 
-		assertEquals(false, input.equals(decodedString));
-		assertEquals(false, input.equals(decodedBits));
+		// Interior nodes are marked explicitly, not by their char
+		HuffmanNode nul = new HuffmanNode('\0', 1);
+		assertTrue(nul.isLeaf());
+		assertEquals(false, new HuffmanNode(1, nul, null).isLeaf());
+		assertEquals(false, new HuffmanNode(0, null, null).isLeaf());
 	}
 
 	@Test
@@ -312,4 +368,1167 @@ public class HuffmanTest {
 		String print = "a : 0\n" + "b : 0\n";
 		assertEquals(print, ht.toString());
 	}
+
+	@Test
+	public void testTableDecoder() { // Table decoding matches the tree walk
+		String input = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.";
+
+		HuffmanNode root = Encode.buildHuffmanTree(input);
+		TableDecoder decoder = new TableDecoder(root);
+		String encodeString = Encode.encodeString(input, root);
+		int[] encodeBits = Encode.encodeBits(input, root);
+
+		assertEquals(Decode.decode(encodeString, root), decoder.decode(encodeString));
+		assertEquals(Decode.decode(encodeBits, root), decoder.decode(encodeBits));
+		assertEquals(input, decoder.decode(encodeBits));
+	}
+
+	@Test
+	public void testTableDecoderLongCodes() { // Fibonacci frequencies give codes longer than the table
+		StringBuilder sb = new StringBuilder();
+		int previous = 1;
+		int current = 1;
+		for (char c = 'a'; c < 'a' + 20; c++) {
+			for (int i = 0; i < current; i++) {
+				sb.append(c);
+			}
+			int next = previous + current;
+			previous = current;
+			current = next;
+		}
+		String input = sb.toString();
+
+		HuffmanNode root = Encode.buildHuffmanTree(input);
+		String encodeString = Encode.encodeString(input, root);
+		int[] encodeBits = Encode.encodeBits(input, root);
+
+		for (int tableBits = 1; tableBits <= TableDecoder.MAX_TABLE_BITS; tableBits++) {
+			TableDecoder decoder = new TableDecoder(root, tableBits);
+			assertEquals(input, decoder.decode(encodeString));
+			assertEquals(input, decoder.decode(encodeBits));
+		}
+	}
+
+	@Test
+	public void testCanonicalCode() { // Codes rebuilt from the header alone decode the input
+		String input = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.";
+
+		HuffmanNode root = Encode.buildHuffmanTree(input);
+		CanonicalCode code = CanonicalCode.fromTree(root);
+		int[] encodeBits = code.encodeBits(input);
+
+		// Canonical codes are exactly as long as the tree's codes
+		assertEquals(Encode.encodeBits(input, root)[0], encodeBits[0]);
+
+		CanonicalCode received = CanonicalCode.fromHeader(code.toHeader());
+		assertEquals(input, received.decode(encodeBits));
+		assertEquals(input, Decode.decode(encodeBits, received.toTree()));
+
+		// An empty input has the same {0, 0} shape as Encode.encodeBits, and round trips
+		int[] empty = code.encodeBits("");
+		assertArrayEquals(Encode.encodeBits("", root), empty);
+		assertEquals("", received.decode(empty));
+		assertEquals("", Decode.decode(empty, received.toTree()));
+	}
+
+	@Test
+	public void testCanonicalCodeAssignment() {
+		// Lengths {a=2, b=1, c=3, d=3} give b=0, a=10, c=110, d=111
+		CanonicalCode code = CanonicalCode.fromLengths(new int[] { 'a', 'b', 'c', 'd' }, new int[] { 2, 1, 3, 3 });
+		assertEquals(0b0, code.code('b'));
+		assertEquals(0b10, code.code('a'));
+		assertEquals(0b110, code.code('c'));
+		assertEquals(0b111, code.code('d'));
+		assertEquals(3, code.codeLength('d'));
+		assertEquals(0, code.codeLength('e'));
+
+		// A single character still receives a 1 bit code
+		code = CanonicalCode.fromTree(Encode.buildHuffmanTree("aaaa"));
+		assertEquals(1, code.codeLength('a'));
+		assertEquals("aaaa", code.decode(code.encodeBits("aaaa")));
+	}
+
+	@Test
+	public void testStreaming() throws IOException { // Input spanning many frames
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(42);
+		for (int i = 0; i < 5 * StreamEncoder.FRAME_CHARS + 17; i++) {
+			sb.append((char) r.nextInt(32, 127));
+		}
+		sb.append("\u00e9\u4e2d\ud83d\ude00"); // Multi-byte UTF-8, including a surrogate pair
+		String input = sb.toString();
+		byte[] inputBytes = input.getBytes(StandardCharsets.UTF_8);
+
+		CanonicalCode code = CanonicalCode.fromTree(Encode.buildHuffmanTree(input));
+
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		StreamEncoder.encode(new ByteArrayInputStream(inputBytes), encoded, code);
+
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		StreamDecoder.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+		assertEquals(input, decoded.toString(StandardCharsets.UTF_8));
+
+		// The same bytes are produced over channels
+		ByteArrayOutputStream channelEncoded = new ByteArrayOutputStream();
+		StreamEncoder.encode(Channels.newChannel(new ByteArrayInputStream(inputBytes)),
+				Channels.newChannel(channelEncoded), code);
+		assertArrayEquals(encoded.toByteArray(), channelEncoded.toByteArray());
+
+		ByteArrayOutputStream channelDecoded = new ByteArrayOutputStream();
+		StreamDecoder.decode(Channels.newChannel(new ByteArrayInputStream(channelEncoded.toByteArray())),
+				Channels.newChannel(channelDecoded));
+		assertArrayEquals(inputBytes, channelDecoded.toByteArray());
+	}
+
+	@Test
+	public void testStreamingTwoPass() throws IOException { // A file is counted, then encoded with its own code
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(3);
+		for (int i = 0; i < 3 * StreamEncoder.FRAME_CHARS; i++) {
+			sb.append((char) (r.nextInt(20) == 0 ? r.nextInt(0x4e00, 0x4f00) : r.nextInt(32, 127)));
+		}
+		String input = sb.toString();
+
+		Path file = Files.createTempFile("huffman", ".txt");
+		try {
+			Files.writeString(file, input, StandardCharsets.UTF_8);
+			ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+			StreamEncoder.encode(file, StandardCharsets.UTF_8, encoded);
+
+			ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+			StreamDecoder.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+			assertEquals(input, decoded.toString(StandardCharsets.UTF_8));
+		} finally {
+			Files.delete(file);
+		}
+
+		// A character missing from the code is rejected before its frame is written
+		CanonicalCode code = StreamEncoder.buildCode(new StringReader(input.substring(0, 100)));
+		ByteArrayOutputStream partial = new ByteArrayOutputStream();
+		try {
+			StreamEncoder.encode(new StringReader(input.substring(0, 100) + "\u0001"), partial, code);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testByteEncoding() { // Every byte value, including 0, round trips
+		Random r = new Random(7);
+		byte[] input = new byte[100000];
+		for (int i = 0; i < input.length; i++) {
+			// Mostly zeros and small values, with a long tail over all 256 values
+			input[i] = (byte) (r.nextInt(4) == 0 ? r.nextInt(256) : r.nextInt(8));
+		}
+
+		byte[] encoded = ByteEncode.encode(input);
+		assertEquals(true, encoded.length < input.length);
+		assertArrayEquals(input, ByteDecode.decode(encoded));
+
+		assertArrayEquals(new byte[0], ByteDecode.decode(ByteEncode.encode(new byte[0])));
+		assertArrayEquals(new byte[] { 0, 0, 0 }, ByteDecode.decode(ByteEncode.encode(new byte[] { 0, 0, 0 })));
+
+		// A header with a symbol past the byte values is rejected, not truncated, even
+		// when its code is too long for the lookup table: bytes 0 to 11 take codes of
+		// 1 to 12 bits, and symbol 300 the last 12-bit code, all ones
+		int[] symbols = new int[13];
+		int[] lengths = new int[13];
+		for (int i = 0; i < 12; i++) {
+			symbols[i] = i;
+			lengths[i] = i + 1;
+		}
+		symbols[12] = 300;
+		lengths[12] = 12;
+		byte[] header = CanonicalCode.fromLengths(symbols, lengths).toHeader();
+		ByteBuffer foreign = ByteBuffer.allocate(Integer.BYTES + header.length + 2);
+		foreign.putInt(1).put(header).put((byte) 0xFF).put((byte) 0xF0);
+		try {
+			ByteDecode.decode(foreign.array());
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testSkewedByteEncoding() { // Fibonacci counts would need a Huffman code longer than 32 bits
+		int[] counts = new int[34];
+		counts[0] = 1;
+		counts[1] = 1;
+		int total = 2;
+		for (int i = 2; i < counts.length; i++) {
+			counts[i] = counts[i - 1] + counts[i - 2];
+			total += counts[i];
+		}
+
+		byte[] input = new byte[total];
+		int index = 0;
+		for (int b = 0; b < counts.length; b++) {
+			for (int i = 0; i < counts[b]; i++) {
+				input[index++] = (byte) b;
+			}
+		}
+
+		assertArrayEquals(input, ByteDecode.decode(ByteEncode.encode(input)));
+	}
+
+	@Test
+	public void testByteBufferEncoding() { // Buffers are consumed up to the end of each message
+		byte[] first = "Hello, Huffman".getBytes(StandardCharsets.UTF_8);
+		byte[] second = new byte[] { 0, 1, 0, 2, 0, 3, -1 };
+
+		ByteBuffer firstEncoded = ByteEncode.encode(ByteBuffer.wrap(first));
+		ByteBuffer secondEncoded = ByteEncode.encode(ByteBuffer.wrap(second));
+
+		ByteBuffer both = ByteBuffer.allocateDirect(firstEncoded.remaining() + secondEncoded.remaining());
+		both.put(firstEncoded).put(secondEncoded).flip();
+
+		assertArrayEquals(first, ByteDecode.decode(both).array());
+		assertArrayEquals(second, ByteDecode.decode(both).array());
+		assertEquals(0, both.remaining());
+	}
+
+	@Test
+	public void testFrequencyTable() { // Matches the HashTable-based counting, including tree shape
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(11);
+		for (int i = 0; i < 100000; i++) {
+			// Mostly ASCII, with some CJK and some code points above U+FFFF
+			int kind = r.nextInt(20);
+			if (kind == 0) {
+				sb.appendCodePoint(r.nextInt(0x1F600, 0x1F640));
+			} else {
+				sb.append((char) (kind < 3 ? r.nextInt(0x3000, 0x3100) : r.nextInt(32, 127)));
+			}
+		}
+		String input = sb.toString();
+
+		HashTable<Character, Integer> expected = new HashTable<>();
+		Character[] keys = assertLegacyCounts(input, expected);
+
+		// Short inputs are counted in a CharIntMap instead, with the same result
+		assertLegacyCounts(input.substring(0, 37), new HashTable<>());
+		assertLegacyCounts(input.substring(0, 5000), new HashTable<>());
+		assertEquals(0, FrequencyTable.count("").size());
+
+		PriorityQueue queue = new PriorityQueue(keys.length);
+		for (char c : keys) {
+			queue.insert(new HuffmanNode(c, expected.get(c)));
+		}
+		while (queue.size() > 1) {
+			HuffmanNode left = queue.popMin();
+			HuffmanNode right = queue.popMin();
+			HuffmanNode parent = new HuffmanNode('\0', left.getFrequency() + right.getFrequency());
+			parent.setLeftChild(left);
+			parent.setRightChild(right);
+			queue.insert(parent);
+		}
+
+		String prefix = input.substring(0, 2000);
+		assertEquals(Encode.encodeString(prefix, queue.popMin()),
+				Encode.encodeString(prefix, Encode.buildHuffmanTree(input)));
+	}
+
+	/**
+	 * Check that a FrequencyTable holds the same counts, in the same order, as
+	 * the original HashTable-based counting.
+	 *
+	 * @return The characters in legacy order
+	 */
+	private static Character[] assertLegacyCounts(String input, HashTable<Character, Integer> expected) {
+		for (char c : input.toCharArray()) {
+			expected.put(c, expected.getOrDefault(c, 0) + 1);
+		}
+
+		// The original table iterated by c % 17, and then most recently first seen
+		// first; the keys come back in the order they were first seen
+		FrequencyTable table = FrequencyTable.count(input);
+		Character[] keys = expected.keySet();
+		Collections.reverse(Arrays.asList(keys));
+		Arrays.sort(keys, (x, y) -> Integer.compare(x % 17, y % 17));
+		assertEquals(keys.length, table.size());
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals((char) keys[i], table.symbol(i));
+			assertEquals((int) expected.get(keys[i]), table.frequency(i));
+		}
+		return keys;
+	}
+
+	@Test
+	public void testParallelFrequencyTable() { // Chunked counting matches sequential counting
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(13);
+		for (int i = 0; i < 1_500_000; i++) {
+			sb.append((char) (r.nextInt(1000) == 0 ? r.nextInt(0x4e00, 0x4f00) : r.nextInt(32, 127)));
+		}
+		String input = sb.toString();
+
+		FrequencyTable expected = FrequencyTable.count(input);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			FrequencyTable parallel = FrequencyTable.countParallel(input, pool);
+			assertEquals(expected.size(), parallel.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.symbol(i), parallel.symbol(i));
+				assertEquals(expected.frequency(i), parallel.frequency(i));
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		// Counting switches to parallel above the threshold given, with the same tree
+		String prefix = input.substring(0, 1000);
+		String sequentialEncoding = Encode.encodeString(prefix, Encode.buildHuffmanTree(input));
+		HuffmanNode parallelRoot = Encode.buildHuffmanTreeParallel(input, 1000);
+		assertEquals(sequentialEncoding, Encode.encodeString(prefix, parallelRoot));
+		try {
+			FrequencyTable.count(input, 0);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testBlockEncoding() { // Blocks encoded and decoded in parallel
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(17);
+		for (int i = 0; i < 300_000; i++) {
+			sb.append((char) (r.nextInt(50) == 0 ? r.nextInt(0x100, 0x200) : r.nextInt(32, 127)));
+		}
+		String input = sb.toString();
+		HuffmanNode root = Encode.buildHuffmanTree(input);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			EncodedBlocks blocks = Encode.encodeBlocks(input, root, 1000, pool);
+			assertEquals(300, blocks.getBlockCount());
+			assertEquals(input, Decode.decode(blocks, root, pool));
+
+			// Blocks hold the same bits as a single sequential encoding
+			long totalBits = 0;
+			for (int block = 0; block < blocks.getBlockCount(); block++) {
+				assertEquals(0, blocks.getBlockOffset(block) % Integer.SIZE);
+				totalBits += blocks.getBlockLength(block);
+			}
+			assertEquals(Encode.encodeBits(input, root)[0], totalBits);
+		} finally {
+			pool.shutdown();
+		}
+
+		EncodedBlocks empty = Encode.encodeBlocks("", root);
+		assertEquals(0, empty.getBlockCount());
+		assertEquals("", Decode.decode(empty, root));
+	}
+
+	@Test
+	public void testSeekIndex() { // Ranges decoded from the nearest sync point
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(19);
+		for (int i = 0; i < 50_000; i++) {
+			sb.append((char) r.nextInt(32, 127));
+		}
+		String input = sb.toString();
+		HuffmanNode root = Encode.buildHuffmanTree(input);
+		int[] encodeBits = Encode.encodeBits(input, root);
+
+		SeekIndex index = SeekIndex.fromArray(Encode.buildSeekIndex(input, root, 1000).toArray());
+		assertEquals(50, index.size());
+
+		int[][] ranges = { { 0, 0 }, { 0, 10 }, { 999, 1001 }, { 12345, 23456 }, { 49_000, 50_000 }, { 0, 50_000 } };
+		for (int[] range : ranges) {
+			assertEquals(input.substring(range[0], range[1]), Decode.decode(encodeBits, root, index, range[0], range[1]));
+		}
+
+		EncodedBlocks blocks = Encode.encodeBlocks(input, root, 1000, ForkJoinPool.commonPool());
+		for (int[] range : ranges) {
+			assertEquals(input.substring(range[0], range[1]), Decode.decode(blocks, root, range[0], range[1]));
+		}
+	}
+
+	@Test
+	public void testWordEncoding() { // Exactly sized 64-bit word output
+		String input = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.";
+		HuffmanNode root = Encode.buildHuffmanTree(input);
+
+		EncodedBits encoded = Encode.encodeWords(input, root);
+		int[] encodeBits = Encode.encodeBits(input, root);
+		assertEquals(encodeBits[0], encoded.getBitLength());
+		assertEquals(encoded.getBitLength(), Encode.encodedLength(FrequencyTable.count(input), root));
+		assertEquals((encoded.getBitLength() + 63) / 64, encoded.getWords().length);
+
+		// The longs hold the same bits as the ints
+		for (int i = 0; i < encoded.getWords().length; i++) {
+			long word = encoded.getWords()[i];
+			assertEquals(encodeBits[2 * i + 1], (int) (word >>> 32));
+			if (2 * i + 2 < encodeBits.length) {
+				assertEquals(encodeBits[2 * i + 2], (int) word);
+			}
+		}
+		assertEquals(input, Decode.decode(encoded, root));
+
+		long[] buffer = new long[encoded.getWords().length];
+		assertEquals(encoded.getBitLength(), Encode.encodeWords(input, root, buffer));
+		assertArrayEquals(encoded.getWords(), buffer);
+	}
+
+	@Test
+	public void testDecodeIntoSinks() throws IOException { // char[], CharBuffer and Appendable output
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(19);
+		for (int i = 0; i < 500_000; i++) {
+			sb.append((char) (r.nextInt(20) == 0 ? r.nextInt(0x100, 0x400) : r.nextInt(32, 127)));
+		}
+		String input = sb.toString();
+		HuffmanNode root = Encode.buildHuffmanTree(input);
+		int[] encodeBits = Encode.encodeBits(input, root);
+
+		// Both tree walks are linear now, so a 500 KB payload decodes quickly
+		assertEquals(input, Decode.decode(encodeBits, root));
+		assertEquals(input, Decode.decode(Encode.encodeString(input, root), root));
+		assertEquals(input, Decode.decode(encodeBits, root, input.length()));
+
+		char[] chars = new char[input.length() + 3];
+		assertEquals(input.length(), Decode.decode(encodeBits, root, chars, 3));
+		assertEquals(input, new String(chars, 3, input.length()));
+
+		CharBuffer heap = CharBuffer.allocate(input.length() + 1);
+		heap.put('>');
+		Decode.decode(encodeBits, root, heap);
+		assertEquals('>' + input, heap.flip().toString());
+
+		CharBuffer direct = ByteBuffer.allocateDirect(2 * input.length()).asCharBuffer();
+		Decode.decode(encodeBits, root, direct);
+		assertEquals(input.length(), direct.position());
+		assertEquals(input, direct.flip().toString());
+
+		StringWriter writer = new StringWriter();
+		Decode.decode(encodeBits, root, writer);
+		assertEquals(input, writer.toString());
+
+		StringBuilder builder = new StringBuilder("<");
+		new TableDecoder(root).decode(encodeBits, builder);
+		assertEquals('<' + input, builder.toString());
+
+		// Too little room is reported rather than silently truncated
+		try {
+			Decode.decode(encodeBits, root, new char[input.length()], 1);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			Decode.decode(encodeBits, root, CharBuffer.allocate(input.length() - 1));
+			fail();
+		} catch (BufferOverflowException e) {
+		}
+	}
+
+	@Test
+	public void testFlatHuffmanTree() { // Array-based trees decode and encode like HuffmanNodes
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(23);
+		for (int i = 0; i < 50_000; i++) {
+			// A skewed alphabet, so some codes are longer than the decode table
+			int c = 0;
+			while (c < 40 && r.nextInt(3) == 0) {
+				c++;
+			}
+			sb.append((char) ('A' + c));
+		}
+		String input = sb.toString();
+		HuffmanNode root = Encode.buildHuffmanTree(input);
+		FlatHuffmanTree tree = FlatHuffmanTree.fromTree(root);
+
+		int distinct = FrequencyTable.count(input).size();
+		assertEquals(distinct, tree.getLeafCount());
+		assertEquals(distinct - 1, tree.getInteriorCount());
+		assertEquals(0, tree.getRoot());
+
+		int[] encodeBits = Encode.encodeBits(input, root);
+		String encodeString = Encode.encodeString(input, root);
+		assertArrayEquals(encodeBits, Encode.encodeBits(input, tree));
+		assertEquals(input, Decode.decode(encodeBits, tree));
+		assertEquals(input, Decode.decode(encodeString, tree));
+		assertEquals(input, new TableDecoder(tree, 4).decode(encodeBits));
+
+		// One tree shared by many threads
+		int[] results = IntStream.range(0, 8).parallel()
+				.map(i -> Decode.decode(encodeBits, tree).equals(input) ? 1 : 0).toArray();
+		assertArrayEquals(new int[] { 1, 1, 1, 1, 1, 1, 1, 1 }, results);
+
+		// Empty, single leaf and invalid trees
+		assertEquals(FlatHuffmanTree.NONE, FlatHuffmanTree.fromTree(null).getRoot());
+		assertEquals(Decode.ERROR_MESSAGE, Decode.decode("0", FlatHuffmanTree.fromTree(null)));
+		FlatHuffmanTree leaf = FlatHuffmanTree.fromTree(new HuffmanNode('x', 3));
+		assertTrue(FlatHuffmanTree.isLeaf(leaf.getRoot()));
+		assertEquals('x', leaf.getData(leaf.getRoot()));
+
+		HuffmanNode invalid = new HuffmanNode('\0', 2);
+		invalid.setLeftChild(new HuffmanNode('a', 1));
+		FlatHuffmanTree oneSided = FlatHuffmanTree.fromTree(invalid);
+		assertEquals(FlatHuffmanTree.NONE, oneSided.getRightChild(0));
+		assertEquals("aa", Decode.decode("00", oneSided));
+		assertEquals(Decode.ERROR_MESSAGE, Decode.decode("01", oneSided));
+	}
+
+	@Test
+	public void testLengthLimitedTree() { // Package-merge caps code lengths at the smallest cost
+		// Fibonacci frequencies give the deepest possible tree
+		StringBuilder sb = new StringBuilder();
+		int previous = 1;
+		int current = 1;
+		for (int i = 0; i < 24; i++) {
+			for (int j = 0; j < previous; j++) {
+				sb.append((char) ('A' + i));
+			}
+			int next = previous + current;
+			previous = current;
+			current = next;
+		}
+		String input = sb.toString();
+		FrequencyTable frequencies = FrequencyTable.count(input);
+		HuffmanNode unlimited = Encode.buildHuffmanTree(frequencies);
+		long unlimitedBits = Encode.encodedLength(frequencies, unlimited);
+		assertEquals(23, FlatHuffmanTree.fromTree(unlimited).getDepth());
+
+		long previousBits = Long.MAX_VALUE;
+		for (int limit : new int[] { 5, 8, 11, 15, 22 }) {
+			HuffmanNode root = Encode.buildHuffmanTree(frequencies, limit);
+			assertEquals(limit, FlatHuffmanTree.fromTree(root).getDepth());
+
+			// A tighter limit never costs less than a looser one or no limit
+			long bits = Encode.encodedLength(frequencies, root);
+			assertTrue(bits >= unlimitedBits);
+			assertTrue(bits <= previousBits);
+			previousBits = bits;
+
+			int[] encodeBits = Encode.encodeBits(input, root);
+			assertEquals(bits, encodeBits[0]);
+			assertEquals(input, Decode.decode(encodeBits, root));
+			assertEquals(input, new TableDecoder(root, Math.min(limit, TableDecoder.MAX_TABLE_BITS)).decode(encodeBits));
+		}
+
+		// A limit the tree already meets leaves it unchanged
+		assertArrayEquals(Encode.encodeBits(input, unlimited),
+				Encode.encodeBits(input, Encode.buildHuffmanTree(frequencies, 23)));
+		HuffmanNode single = Encode.buildHuffmanTree("x", 1);
+		assertEquals("x", Decode.decode(Encode.encodeBits("x", single), single));
+
+		try {
+			Encode.buildHuffmanTree(frequencies, 4); // 24 characters need 5 bits
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testLinearTree() { // Two-queue construction matches the heap's cost
+		Random r = new Random(29);
+		for (int trial = 0; trial < 20; trial++) {
+			// Few distinct values make many ties; wide ranges make few
+			int alphabet = r.nextInt(1, 3000);
+			int spread = trial % 2 == 0 ? 4 : 1_000_000;
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < alphabet; i++) {
+				int count = 1 + r.nextInt(spread) % 200;
+				for (int j = 0; j < count; j++) {
+					sb.append((char) (0x20 + i * 7));
+				}
+			}
+			String input = sb.toString();
+			FrequencyTable frequencies = FrequencyTable.count(input);
+
+			HuffmanNode heap = Encode.buildHuffmanTree(frequencies);
+			HuffmanNode linear = Encode.buildHuffmanTreeLinear(frequencies);
+			assertEquals(Encode.encodedLength(frequencies, heap), Encode.encodedLength(frequencies, linear));
+
+			int[] encodeBits = Encode.encodeBits(input, linear);
+			assertEquals(input, Decode.decode(encodeBits, linear));
+			assertArrayEquals(encodeBits, Encode.encodeBits(input, Encode.buildHuffmanTreeLinear(input)));
+		}
+
+		// With distinct frequencies and sums, the tree is unique, so lengths match
+		String input = "abbccccddddddddeeeeeeeeeeeeeeee";
+		CanonicalCode heap = CanonicalCode.fromTree(Encode.buildHuffmanTree(input));
+		CanonicalCode linear = CanonicalCode.fromTree(Encode.buildHuffmanTreeLinear(input));
+		for (char c = 'a'; c <= 'e'; c++) {
+			assertEquals(heap.codeLength(c), linear.codeLength(c));
+		}
+
+		// Ties are broken by character, then leaves before merged nodes
+		assertEquals("00011011", Encode.encodeString("abcd", Encode.buildHuffmanTreeLinear("dcba")));
+		assertEquals("00", Encode.encodeString("\0\0", Encode.buildHuffmanTreeLinear("\0\0")));
+	}
+
+	@Test
+	public void testDeterministicTree() { // Encodings are stable across runs, JVMs and input order
+		String input = "the quick brown fox jumps over the lazy dog";
+		int[] expected = { 192, -148162586, 305167216, 1579534111, -362564162, -1145189687, 82151269 };
+		assertArrayEquals(expected, Encode.encodeBits(input, Encode.buildDeterministicHuffmanTree(input)));
+
+		// java.util.Random is specified to give the same values on every JVM
+		Random r = new Random(31);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100_000; i++) {
+			sb.append((char) (r.nextInt(8) == 0 ? r.nextInt(0x100, 0x180) : r.nextInt(32, 127)));
+		}
+		String large = sb.toString();
+		int[] encodeBits = Encode.encodeBits(large, Encode.buildDeterministicHuffmanTree(large));
+		ByteBuffer bytes = ByteBuffer.allocate(encodeBits.length * Integer.BYTES);
+		bytes.asIntBuffer().put(encodeBits);
+		CRC32 crc = new CRC32();
+		crc.update(bytes.array());
+		assertEquals(721376, encodeBits[0]);
+		assertEquals(0x2fdd5854L, crc.getValue());
+
+		// The same frequencies in any order give the same tree, matching the
+		// two-queue builder
+		String alphabet = "abcdefghijklmnopqrstuvwxyz ";
+		StringBuilder forwards = new StringBuilder();
+		StringBuilder backwards = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			char c = alphabet.charAt(r.nextInt(alphabet.length()) % (1 + r.nextInt(alphabet.length())));
+			forwards.append(c);
+			backwards.insert(0, c);
+		}
+		String codes = Encode.encodeString(alphabet, Encode.buildDeterministicHuffmanTree(forwards.toString()));
+		assertEquals(codes, Encode.encodeString(alphabet, Encode.buildDeterministicHuffmanTree(backwards.toString())));
+		assertEquals(codes, Encode.encodeString(alphabet, Encode.buildHuffmanTreeLinear(forwards.toString())));
+
+		// Equal frequencies pop leaves by char, then interior nodes oldest first
+		PriorityQueue pq = new PriorityQueue(2, HuffmanNode.DETERMINISTIC_ORDER);
+		HuffmanNode interior = new HuffmanNode(2, null, null, HuffmanNode.FIRST_INTERIOR_SEQUENCE);
+		HuffmanNode newer = new HuffmanNode(2, null, null, HuffmanNode.FIRST_INTERIOR_SEQUENCE + 1);
+		pq.insert(newer);
+		pq.insert(new HuffmanNode('z', 2));
+		pq.insert(interior);
+		pq.insert(new HuffmanNode('a', 2));
+		pq.insert(new HuffmanNode('q', 1));
+		assertEquals('q', pq.popMin().getData());
+		assertEquals('a', pq.popMin().getData());
+		assertEquals('z', pq.popMin().getData());
+		assertEquals(interior, pq.popMin());
+		assertEquals(newer, pq.popMin());
+	}
+
+	@Test
+	public void testLargeFrequencies() { // Frequencies and lengths past 2^31 do not overflow
+		HuffmanNode huge = new HuffmanNode('a', 3_000_000_000L);
+		HuffmanNode small = new HuffmanNode('b', 1);
+		assertTrue(huge.compareTo(small) > 0);
+		assertTrue(small.compareTo(huge) < 0);
+		assertTrue(HuffmanNode.DETERMINISTIC_ORDER.compare(huge, small) > 0);
+
+		PriorityQueue pq = new PriorityQueue(4);
+		pq.insert(new HuffmanNode('c', Long.MAX_VALUE / 2));
+		pq.insert(huge);
+		pq.insert(small);
+		pq.insert(new HuffmanNode('d', Integer.MAX_VALUE + 1L));
+		assertEquals('b', pq.popMin().getData());
+		assertEquals('d', pq.popMin().getData());
+		assertEquals('a', pq.popMin().getData());
+		assertEquals('c', pq.popMin().getData());
+
+		// Counts of stream chunks add up past Integer.MAX_VALUE
+		FrequencyTable chunk = FrequencyTable.of(new char[] { 'x', 'y' }, new long[] { Integer.MAX_VALUE, 5 });
+		FrequencyTable total = chunk.merge(FrequencyTable.count("zzy")).merge(chunk);
+		assertEquals(3, total.size());
+		assertEquals('z', total.symbol(2));
+		assertEquals(2L * Integer.MAX_VALUE, total.frequency(0));
+		assertEquals(11, total.frequency(1));
+		assertEquals(2, total.frequency(2));
+		assertEquals(2L * Integer.MAX_VALUE + 13, total.total());
+		try {
+			FrequencyTable.of(new char[] { 'x' }, new long[] { Long.MAX_VALUE }).merge(chunk);
+			fail();
+		} catch (ArithmeticException e) {
+		}
+		try {
+			FrequencyTable.of(new char[] { 'x', 'x' }, new long[] { 1, 1 });
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+
+		// Every builder agrees on the cost of frequencies too large to pack
+		char[] symbols = new char[40];
+		long[] scaled = new long[symbols.length];
+		long[] unscaled = new long[symbols.length];
+		long a = 1, b = 1;
+		for (int i = 0; i < symbols.length; i++) {
+			symbols[i] = (char) ('0' + i);
+			unscaled[i] = a;
+			scaled[i] = a << 20;
+			long next = a + b;
+			a = b;
+			b = next;
+		}
+		FrequencyTable table = FrequencyTable.of(symbols, scaled);
+		HuffmanNode heap = Encode.buildHuffmanTree(table);
+		long length = Encode.encodedLength(table, heap);
+		assertTrue(length > Integer.MAX_VALUE);
+		assertEquals(length, Encode.encodedLength(table, Encode.buildHuffmanTreeLinear(table)));
+		assertEquals(length, Encode.encodedLength(table, Encode.buildDeterministicHuffmanTree(table)));
+		assertTrue(Encode.encodedLength(table, Encode.buildHuffmanTree(table, 24)) > length);
+
+		// Scaling every frequency gives the same tree, whether it is sorted
+		// packed or boxed
+		String alphabet = new String(symbols);
+		assertEquals(Encode.encodeString(alphabet, Encode.buildHuffmanTreeLinear(FrequencyTable.of(symbols, unscaled))),
+				Encode.encodeString(alphabet, Encode.buildHuffmanTreeLinear(table)));
+
+		// The long header of an encoding round trips
+		EncodedBits bits = Encode.encodeWords("overflow", Encode.buildHuffmanTree("overflow"));
+		EncodedBits copy = EncodedBits.fromArray(bits.toArray());
+		assertEquals(bits.getBitLength(), copy.getBitLength());
+		assertEquals("overflow", Decode.decode(copy, Encode.buildHuffmanTree("overflow")));
+		try {
+			EncodedBits.fromArray(new long[] { 65, 1, 0 });
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testCodeBook() { // One shared CodeBook encodes like its tree
+		HuffmanNode root = Encode.buildHuffmanTreeLinear("abcd");
+		CodeBook codes = CodeBook.fromTree(root);
+		assertEquals(2, codes.codeLength('a'));
+		assertEquals(0b11, codes.code('d'));
+		assertTrue(codes.contains('c'));
+		assertTrue(!codes.contains('e'));
+		assertEquals(0, codes.codeLength('\uFFFF'));
+		assertEquals("00011011", Encode.encodeString("abcd", codes));
+
+		Random r = new Random(18);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20_000; i++) {
+			sb.append((char) r.nextInt(32, 127));
+		}
+		String training = sb.toString();
+		HuffmanNode tree = Encode.buildHuffmanTree(training);
+		CodeBook shared = CodeBook.fromTree(tree);
+
+		// Many short messages encoded on many threads with the same CodeBook
+		IntStream.range(0, 2000).parallel().forEach(i -> {
+			int start = (i * 7) % (training.length() - 64);
+			String message = training.substring(start, start + 1 + i % 63);
+			assertEquals(Encode.encodeString(message, tree), Encode.encodeString(message, shared));
+			assertArrayEquals(Encode.encodeBits(message, tree), Encode.encodeBits(message, shared));
+			assertArrayEquals(Encode.encodeWords(message, tree).getWords(), Encode.encodeWords(message, shared).getWords());
+			assertEquals(message, Decode.decode(Encode.encodeBits(message, shared), tree));
+		});
+
+		try {
+			Encode.encodeBits("\u0100", shared);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testDictionary() throws IOException { // Short messages share one trained code
+		Random r = new Random(19);
+		String[] words = { "status", "ok", "error", "user", "id", "time", "retry", "queue", "sent", "=", " ", ";" };
+		List<String> samples = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int w = 0; w < 20; w++) {
+				sb.append(words[r.nextInt(words.length)]);
+			}
+			samples.add(sb.toString());
+		}
+		HuffmanDictionary dictionary = HuffmanDictionary.train(samples);
+		assertTrue(dictionary.getCode().codeLength(HuffmanDictionary.ESCAPE) > 0);
+
+		// The dictionary survives a round trip through a file
+		Path file = Files.createTempFile("huffman", ".dict");
+		try {
+			dictionary.save(file);
+			HuffmanDictionary loaded = HuffmanDictionary.load(file);
+			assertArrayEquals(dictionary.toBytes(), loaded.toBytes());
+
+			for (int i = 0; i < 200; i++) {
+				String message = samples.get(i).substring(0, Math.min(1 + i % 150, samples.get(i).length()));
+				int[] bits = loaded.encodeBits(message);
+				assertEquals(dictionary.bitLength(message), bits[0]);
+				assertTrue(bits[0] < message.length() * 8);
+				assertEquals(message, dictionary.decode(bits));
+			}
+		} finally {
+			Files.delete(file);
+		}
+
+		// Characters outside the samples are escaped, including the extremes
+		String unseen = "status=\0 ok\uFFFF;\u4E2D";
+		assertTrue(dictionary.isEscaped('\uFFFF'));
+		assertEquals(unseen, dictionary.decode(dictionary.encodeBits(unseen)));
+		assertEquals("", dictionary.decode(dictionary.encodeBits("")));
+
+		// The raw code cannot turn an escape into a char
+		try {
+			dictionary.getCode().decode(dictionary.encodeBits(unseen));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			dictionary.getCode().toTree();
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+
+		// An empty corpus escapes everything
+		HuffmanDictionary empty = HuffmanDictionary.train(Collections.<String>emptyList());
+		assertEquals(unseen, empty.decode(empty.encodeBits(unseen)));
+		assertEquals(unseen.length() * 17, empty.bitLength(unseen));
+
+		try {
+			dictionary.decode(new int[] { 64, 0 });
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testTreeCache() { // Repeated histograms reuse one tree, least recently used evicted first
+		TreeCache cache = new TreeCache(2);
+		TreeCache.Entry first = cache.get("hello world");
+		assertEquals(Encode.encodeString("hello world", Encode.buildHuffmanTree("hello world")),
+				Encode.encodeString("hello world", first.getRoot()));
+		assertArrayEquals(Encode.encodeBits("hello world", first.getRoot()),
+				Encode.encodeBits("hello world", first.getCodeBook()));
+
+		// The same characters in the same order hit, a different count misses
+		assertTrue(first == cache.get("hello world"));
+		cache.get("hello  world");
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		// Touching the first entry makes the second the eldest
+		cache.get("hello world");
+		cache.get("abc");
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2, cache.size());
+		assertTrue(first == cache.get("hello world"));
+		cache.get("hello  world");
+		assertEquals(4, cache.getMisses());
+		assertEquals(null, cache.get("").getRoot());
+
+		// Many threads share the cache without building wrong trees
+		TreeCache shared = new TreeCache(8, Encode::buildDeterministicHuffmanTree);
+		String[] shapes = new String[16];
+		for (int i = 0; i < shapes.length; i++) {
+			shapes[i] = "message " + i + " of shape " + (i * 31);
+		}
+		IntStream.range(0, 10_000).parallel().forEach(i -> {
+			String message = shapes[i % shapes.length];
+			TreeCache.Entry entry = shared.get(message);
+			assertEquals(message, Decode.decode(Encode.encodeBits(message, entry.getCodeBook()), entry.getRoot()));
+		});
+		assertEquals(10_000, shared.getHits() + shared.getMisses());
+		assertTrue(shared.size() <= 8);
+
+		try {
+			new TreeCache(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testCodec() throws Exception { // Many concurrent requests share one tree with bounded in-flight work
+		String training = "the quick brown fox jumps over the lazy dog 0123456789";
+		HuffmanNode root = Encode.buildHuffmanTree(training);
+		try (HuffmanCodec codec = new HuffmanCodec(root)) {
+			String message = "lazy fox 42";
+			int[] bits = codec.encode(message).get();
+			assertArrayEquals(Encode.encodeBits(message, root), bits);
+			assertEquals(message, codec.decode(bits).get());
+
+			// Failures complete the future instead of throwing
+			try {
+				codec.encode("\u00e9").get();
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalArgumentException);
+			}
+		}
+
+		// Requests chained from inside other requests never wait on each other
+		ExecutorService pool = Executors.newFixedThreadPool(16);
+		try (HuffmanCodec codec = new HuffmanCodec(root, pool, 4, 1 << 16)) {
+			List<CompletableFuture<String>> results = new ArrayList<>();
+			for (int i = 0; i < 20_000; i++) {
+				String message = training.substring(i % 40, i % 40 + 1 + i % 13);
+				results.add(codec.encode(message).thenCompose(codec::decode));
+				assertTrue(codec.getInFlight() <= 4);
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(training.substring(i % 40, i % 40 + 1 + i % 13), results.get(i).get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		// Requests past the queue limit are rejected without waiting
+		List<Runnable> held = new ArrayList<>();
+		HuffmanCodec stalled = new HuffmanCodec(root, held::add, 1, 1);
+		CompletableFuture<int[]> running = stalled.encode("fox");
+		CompletableFuture<int[]> waiting = stalled.encode("dog");
+		CompletableFuture<int[]> rejected = stalled.encode("cat");
+		assertEquals(1, stalled.getInFlight());
+		assertEquals(1, stalled.getQueued());
+		assertTrue(rejected.isCompletedExceptionally());
+		held.get(0).run();
+		assertEquals("fox", Decode.decode(running.get(), root));
+		held.get(1).run();
+		assertEquals("dog", Decode.decode(waiting.get(), root));
+		assertEquals(0, stalled.getInFlight());
+
+		// An executor which fails still completes every future
+		List<Runnable> accepted = new ArrayList<>();
+		HuffmanCodec failing = new HuffmanCodec(root, task -> {
+			if (!accepted.isEmpty()) {
+				throw new IllegalStateException("The executor is broken");
+			}
+			accepted.add(task);
+		}, 1, 4);
+		CompletableFuture<int[]> first = failing.encode("fox");
+		CompletableFuture<int[]> second = failing.encode("dog");
+		accepted.get(0).run();
+		assertEquals("fox", Decode.decode(first.get(), root));
+		try {
+			second.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(0, failing.getInFlight());
+
+		// Closing rejects new requests, but runs every queued one first
+		HuffmanCodec closing = new HuffmanCodec(root);
+		List<CompletableFuture<int[]>> submitted = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			submitted.add(closing.encode(training.substring(i % 40, i % 40 + 1 + i % 13)));
+		}
+		closing.close();
+		for (int i = 0; i < submitted.size(); i++) {
+			assertArrayEquals(Encode.encodeBits(training.substring(i % 40, i % 40 + 1 + i % 13), root),
+					submitted.get(i).get());
+		}
+		try {
+			closing.encode("fox").get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+	}
+
+	@Test
+	public void testBatchEncoding() { // Messages packed back to back decode by index
+		Random r = new Random(22);
+		List<String> messages = new ArrayList<>();
+		StringBuilder all = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int j = r.nextInt(0, 40); j > 0; j--) {
+				sb.append((char) (r.nextInt(6) == 0 ? r.nextInt(0x400, 0x420) : r.nextInt('a', 'z' + 1)));
+			}
+			messages.add(sb.toString());
+			all.append(sb);
+		}
+
+		EncodedBatch batch = Encode.encodeBatch(messages);
+		assertEquals(messages.size(), batch.size());
+		assertEquals(Encode.encodedLength(FrequencyTable.count(all), batch.getRoot()), batch.getTotalBits());
+		assertEquals((batch.getTotalBits() + 31) / 32, batch.getBits().length);
+		for (int i = messages.size() - 1; i >= 0; i--) {
+			assertEquals(messages.get(i), batch.decode(i));
+			assertEquals(messages.get(i).length(), batch.getMessageLength(i));
+		}
+
+		// A tree can be given, and messages decoded straight into an array
+		HuffmanNode root = Encode.buildHuffmanTree(all.toString());
+		EncodedBatch shared = Encode.encodeBatch(messages.subList(10, 20), root);
+		char[] dst = new char[50];
+		int count = shared.decode(3, dst, 5);
+		assertEquals(messages.get(13), new String(dst, 5, count));
+		assertEquals(Encode.encodeBits(messages.get(13), root)[0], shared.getBitLength(3));
+
+		// Empty messages and empty batches
+		EncodedBatch empty = Encode.encodeBatch(List.of("", "", ""));
+		assertEquals(3, empty.size());
+		assertEquals("", empty.decode(1));
+		assertEquals(0, Encode.encodeBatch(new ArrayList<String>()).size());
+		assertEquals("aaa", Encode.encodeBatch(List.of("a", "aaa")).decode(1));
+		try {
+			batch.decode(messages.size());
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testZeroAllocationContext() { // Steady-state encode and decode allocate nothing
+		String training = "the quick brown fox jumps over the lazy dog THE QUICK BROWN FOX 0123456789";
+		HuffmanNode root = Encode.buildHuffmanTree(training);
+		HuffmanContext context = new HuffmanContext(root);
+		String[] messages = new String[64];
+		for (int i = 0; i < messages.length; i++) {
+			messages[i] = training.substring(i % 20, i % 20 + 10 + i % 40);
+		}
+		int[] encoded = new int[64];
+		char[] decoded = new char[128];
+
+		// Matches the allocating API
+		int size = context.encode(messages[5], encoded);
+		assertArrayEquals(Encode.encodeBits(messages[5], root), Arrays.copyOf(encoded, size));
+		int count = context.decode(encoded, decoded, 3);
+		assertEquals(messages[5], new String(decoded, 3, count));
+		assertEquals(messages[7], roundTrip(context.newContext(), messages[7], encoded, decoded));
+		try {
+			context.encode(training, new int[2]);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+			return;
+		}
+		long thread = Thread.currentThread().getId();
+
+		// Let the JIT compile the hot path before measuring
+		for (int i = 0; i < 200_000; i++) {
+			roundTrip(context, messages[i % messages.length], encoded, decoded);
+		}
+		int calls = 100_000;
+		long before = threads.getThreadAllocatedBytes(thread);
+		int chars = 0;
+		for (int i = 0; i < calls; i++) {
+			chars += context.decode(encoded, decoded, 0) + context.encode(messages[i % messages.length], encoded);
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		assertTrue(chars > 0);
+		// Nothing per call: a single object per thousand calls would already exceed the bound,
+		// which only leaves room for the allocation counter's own noise
+		assertTrue("Allocated " + allocated + " bytes in " + calls + " calls", allocated <= 1024);
+	}
+
+	/**
+	 * Encode and decode a message with a context.
+	 *
+	 * @return The decoded message
+	 */
+	private static String roundTrip(HuffmanContext context, String message, int[] encoded, char[] decoded) {
+		context.encode(message, encoded);
+		return new String(decoded, 0, context.decode(encoded, decoded, 0));
+	}
+
+	@Test
+	public void testCharIntMap() { // Open addressing matches a HashMap through many resizes
+		Random r = new Random(24);
+		CharIntMap map = new CharIntMap();
+		HashMap<Character, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 200_000; i++) {
+			char key = (char) (r.nextBoolean() ? r.nextInt(64) : r.nextInt(Character.MAX_VALUE + 1));
+			if (r.nextInt(3) == 0) {
+				map.put(key, i);
+				expected.put(key, i);
+			} else {
+				assertEquals(expected.merge(key, 5, Integer::sum).intValue(), map.add(key, 5));
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (char key : map.keys()) {
+			assertEquals(expected.get(key).intValue(), map.get(key, -1));
+		}
+		for (char key = 0; key < 1000; key++) {
+			assertEquals(expected.containsKey(key), map.containsKey(key));
+		}
+
+		// Every char fits, with no empty slot left
+		CharIntMap full = new CharIntMap(0, 0.9f);
+		for (int c = Character.MAX_VALUE; c >= 0; c--) {
+			full.put((char) c, c);
+		}
+		assertEquals(Character.MAX_VALUE + 1, full.size());
+		assertEquals(1234, full.get((char) 1234, -1));
+		assertTrue(full.containsKey('\0'));
+		assertTrue(!new CharIntMap().containsKey('\0'));
+
+		try {
+			new CharIntMap(16, 1f);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testHashTableResize() { // Every key stays reachable while the table grows a step at a time
+		HashTable<Integer, Integer> table = new HashTable<>(2, 0.75f);
+		List<Integer> keys = new ArrayList<>();
+		Random r = new Random(25);
+		keys.add(Integer.MIN_VALUE); // Math.abs would leave this hash negative
+		keys.add(Integer.MAX_VALUE);
+		for (int i = 0; i < 20_000; i++) {
+			// Some keys differ only in their high bits
+			keys.add(r.nextBoolean() ? r.nextInt() : i << 20);
+		}
+
+		HashMap<Integer, Integer> expected = new HashMap<>();
+		List<Integer> order = new ArrayList<>();
+		boolean checkedMidMove = false;
+		for (int i = 0; i < keys.size(); i++) {
+			int key = keys.get(i);
+			if (!expected.containsKey(key)) {
+				order.add(key);
+			}
+			int pending = table.pendingBuckets();
+			table.put(key, i);
+			expected.put(key, i);
+			if (pending > 0) {
+				// No single put moves more than a few buckets
+				assertTrue(table.pendingBuckets() <= pending);
+				assertTrue(pending - table.pendingBuckets() <= HashTable.MIGRATE_STEP);
+			}
+			assertEquals(expected.size(), table.size());
+
+			pending = table.pendingBuckets();
+			assertEquals(i, (int) table.get(key));
+			// A key put long ago is found whichever table its bucket is in
+			int old = keys.get(i / 2);
+			assertEquals(expected.get(old), table.get(old));
+			if (pending > HashTable.MIGRATE_STEP && expected.size() > 5000 && !checkedMidMove) {
+				// Partway through a move, every key is found and lookups move nothing
+				for (int other : expected.keySet()) {
+					assertEquals(expected.get(other), table.get(other));
+				}
+				checkedMidMove = true;
+			}
+			assertEquals(pending, table.pendingBuckets());
+		}
+		assertTrue(checkedMidMove);
+		for (int key : keys) {
+			assertEquals(expected.get(key), table.get(key));
+		}
+		assertEquals(null, table.get(12345));
+		assertEquals(-1, (int) table.getOrDefault(12345, -1));
+
+		// Iteration visits every key once, in the order they were first put
+		List<Integer> iterated = new ArrayList<>();
+		for (int key : table) {
+			iterated.add(key);
+		}
+		assertEquals(order, iterated);
+		List<Integer> visited = new ArrayList<>();
+		table.forEach((key, value) -> {
+			assertEquals(expected.get(key), value);
+			visited.add(key);
+		});
+		assertEquals(order, visited);
+
+		try {
+			new HashTable<Integer, Integer>(16, 0f);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
 }
@@ -0,0 +1,105 @@
+package benchmark;
+
+import java.util.Random;
+
+/**
+ * Seeded inputs for the benchmarks. Every corpus is generated from a fixed
+ * seed, so the same kind and size always produce the same String and results
+ * can be compared between runs and releases.
+ *
+ * @author Andrew Dennison
+ */
+public enum Corpus {
+
+	/**
+	 * Words drawn from a small vocabulary with a Zipf-like bias, separated by
+	 * spaces and the odd punctuation mark. Low entropy, around 4 bits per char.
+	 */
+	ENGLISH {
+		@Override
+		void fill(Random random, char[] chars) {
+			int i = 0;
+			while (i < chars.length) {
+				// Squaring a uniform value favours the first, most common words
+				double r = random.nextDouble();
+				String word = WORDS[(int) (r * r * WORDS.length)];
+				for (int j = 0; j < word.length() && i < chars.length; j++) {
+					chars[i++] = word.charAt(j);
+				}
+				if (i < chars.length) {
+					int p = random.nextInt(16);
+					chars[i++] = p == 0 ? '.' : p == 1 ? ',' : p == 2 ? '\n' : ' ';
+				}
+			}
+		}
+	},
+
+	/**
+	 * Printable ASCII chosen uniformly, around 6.6 bits per char.
+	 */
+	RANDOM_ASCII {
+		@Override
+		void fill(Random random, char[] chars) {
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) (' ' + random.nextInt('~' - ' ' + 1));
+			}
+		}
+	},
+
+	/**
+	 * Lowercase letters with a geometric distribution, so a few characters make
+	 * up almost all of the input and the tree is deep and unbalanced.
+	 */
+	SKEWED {
+		@Override
+		void fill(Random random, char[] chars) {
+			for (int i = 0; i < chars.length; i++) {
+				int c = 0;
+				while (c < 25 && random.nextInt(3) == 0) {
+					c++;
+				}
+				chars[i] = (char) ('a' + c);
+			}
+		}
+	},
+
+	/**
+	 * CJK ideographs chosen uniformly from a block of 4096, which defeats any
+	 * table sized for ASCII. Around 12 bits per char.
+	 */
+	WIDE_UNICODE {
+		@Override
+		void fill(Random random, char[] chars) {
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) (0x4E00 + random.nextInt(4096));
+			}
+		}
+	};
+
+	private static final long SEED = 0x5EED_4B1DL;
+
+	private static final String[] WORDS = { "the", "of", "and", "to", "a", "in", "is", "it", "that", "was", "for",
+			"on", "with", "as", "by", "at", "from", "this", "tree", "node", "code", "bits", "encoding", "Huffman",
+			"frequency", "character", "string", "decode", "heap", "table", "leaf", "root", "left", "right", "input",
+			"output", "length", "symbol", "compression", "entropy", "Andrew", "Chris", "Adam" };
+
+	/**
+	 * Write the characters of the corpus.
+	 *
+	 * @param random The seeded source of randomness
+	 * @param chars  The characters to fill
+	 */
+	abstract void fill(Random random, char[] chars);
+
+	/**
+	 * Generate the corpus at a given size.
+	 *
+	 * @param size The number of characters
+	 * @return The same String for the same corpus and size on every call
+	 */
+	public String generate(int size) {
+		char[] chars = new char[size];
+		fill(new Random(SEED + ordinal()), chars);
+		return new String(chars);
+	}
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Decode;
+import model.Encode;
+import model.FlatHuffmanTree;
+import model.TableDecoder;
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * Benchmarks decoding, both by walking the tree and through a lookup table.
+ *
+ * Sizes stop at 64K characters because decoding a String of 1s and 0s walks
+ * one char per bit.
+ *
+ * @author Andrew Dennison
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+	@Param({ "ENGLISH", "RANDOM_ASCII", "SKEWED", "WIDE_UNICODE" })
+	public Corpus corpus;
+
+	@Param({ "1024", "16384", "65536" })
+	public int size;
+
+	private HuffmanNode root;
+	private FlatHuffmanTree flatTree;
+	private String encodedString;
+	private int[] encodedBits;
+	private TableDecoder tableDecoder;
+	private char[] output;
+
+	@Setup
+	public void setUp() {
+		String input = corpus.generate(size);
+		root = Encode.buildHuffmanTree(input);
+		flatTree = FlatHuffmanTree.fromTree(root);
+		encodedString = Encode.encodeString(input, root);
+		encodedBits = Encode.encodeBits(input, root);
+		tableDecoder = new TableDecoder(root);
+		output = new char[size];
+	}
+
+	@Benchmark
+	public String decodeString() {
+		return Decode.decode(encodedString, root);
+	}
+
+	@Benchmark
+	public String decodeBits() {
+		return Decode.decode(encodedBits, root);
+	}
+
+	@Benchmark
+	public String flatDecodeBits() {
+		return Decode.decode(encodedBits, flatTree);
+	}
+
+	@Benchmark
+	public String tableDecodeBits() {
+		return tableDecoder.decode(encodedBits);
+	}
+
+	@Benchmark
+	public int tableDecodeIntoArray() {
+		return tableDecoder.decode(encodedBits, output, 0);
+	}
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.CodeBook;
+import model.Encode;
+import model.EncodedBits;
+import model.PriorityQueue.HuffmanNode;
+
+/**
+ * Benchmarks building a tree from an input and encoding the input with it.
+ *
+ * @author Andrew Dennison
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+	@Param({ "ENGLISH", "RANDOM_ASCII", "SKEWED", "WIDE_UNICODE" })
+	public Corpus corpus;
+
+	@Param({ "32", "1024", "65536", "1048576" })
+	public int size;
+
+	private String input;
+	private HuffmanNode root;
+	private CodeBook codes;
+
+	@Setup
+	public void setUp() {
+		input = corpus.generate(size);
+		root = Encode.buildHuffmanTree(input);
+		codes = CodeBook.fromTree(root);
+	}
+
+	@Benchmark
+	public HuffmanNode buildHuffmanTree() {
+		return Encode.buildHuffmanTree(input);
+	}
+
+	@Benchmark
+	public HuffmanNode buildHuffmanTreeLinear() {
+		return Encode.buildHuffmanTreeLinear(input);
+	}
+
+	@Benchmark
+	public String encodeString() {
+		return Encode.encodeString(input, root);
+	}
+
+	@Benchmark
+	public int[] encodeBits() {
+		return Encode.encodeBits(input, root);
+	}
+
+	@Benchmark
+	public String encodeStringWithCodeBook() {
+		return Encode.encodeString(input, codes);
+	}
+
+	@Benchmark
+	public int[] encodeBitsWithCodeBook() {
+		return Encode.encodeBits(input, codes);
+	}
+
+	@Benchmark
+	public EncodedBits encodeWords() {
+		return Encode.encodeWords(input, root);
+	}
+}
@@ -0,0 +1,111 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.HashTable.CharIntMap;
+import model.HashTable.HashTable;
+
+/**
+ * Benchmarks the generic HashTable as a Character to Integer frequency table,
+ * against the primitive open-addressing CharIntMap which replaced it on the
+ * encoding paths.
+ *
+ * @author Andrew Dennison
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashTableBenchmark {
+
+	@Param({ "64", "1024", "16384" })
+	public int distinct;
+
+	private char[] keys;
+	private HashTable<Character, Integer> table;
+	private CharIntMap map;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(distinct);
+		keys = new char[distinct];
+		table = new HashTable<>();
+		map = new CharIntMap();
+		for (int i = 0; i < distinct; i++) {
+			keys[i] = (char) random.nextInt(Character.MAX_VALUE + 1);
+			table.put(keys[i], i);
+			map.put(keys[i], i);
+		}
+	}
+
+	@Benchmark
+	public HashTable<Character, Integer> put() {
+		HashTable<Character, Integer> fresh = new HashTable<>();
+		for (int i = 0; i < keys.length; i++) {
+			fresh.put(keys[i], i);
+		}
+		return fresh;
+	}
+
+	@Benchmark
+	public void get(Blackhole blackhole) {
+		for (char key : keys) {
+			blackhole.consume(table.get(key));
+		}
+	}
+
+	@Benchmark
+	public void iterate(Blackhole blackhole) {
+		table.forEach((key, value) -> blackhole.consume(value));
+	}
+
+	@Benchmark
+	public HashTable<Character, Integer> countFrequencies() {
+		HashTable<Character, Integer> counts = new HashTable<>();
+		for (char key : keys) {
+			counts.put(key, counts.getOrDefault(key, 0) + 1);
+		}
+		return counts;
+	}
+
+	@Benchmark
+	public CharIntMap putPrimitive() {
+		CharIntMap fresh = new CharIntMap();
+		for (int i = 0; i < keys.length; i++) {
+			fresh.put(keys[i], i);
+		}
+		return fresh;
+	}
+
+	@Benchmark
+	public void getPrimitive(Blackhole blackhole) {
+		for (char key : keys) {
+			blackhole.consume(map.get(key, 0));
+		}
+	}
+
+	@Benchmark
+	public CharIntMap countFrequenciesPrimitive() {
+		CharIntMap counts = new CharIntMap();
+		for (char key : keys) {
+			counts.add(key, 1);
+		}
+		return counts;
+	}
+}
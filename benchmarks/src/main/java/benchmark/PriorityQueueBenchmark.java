@@ -0,0 +1,68 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.PriorityQueue.HuffmanNode;
+import model.PriorityQueue.PriorityQueue;
+
+/**
+ * Benchmarks filling the heap with leaves and draining it with popMin.
+ *
+ * @author Andrew Dennison
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityQueueBenchmark {
+
+	@Param({ "64", "1024", "65536" })
+	public int size;
+
+	private HuffmanNode[] nodes;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(size);
+		nodes = new HuffmanNode[size];
+		for (int i = 0; i < size; i++) {
+			nodes[i] = new HuffmanNode((char) i, 1 + random.nextInt(1 << 20));
+		}
+	}
+
+	@Benchmark
+	public PriorityQueue insert() {
+		PriorityQueue queue = new PriorityQueue(16);
+		for (HuffmanNode node : nodes) {
+			queue.insert(node);
+		}
+		return queue;
+	}
+
+	@Benchmark
+	public void insertPopMin(Blackhole blackhole) {
+		PriorityQueue queue = new PriorityQueue(16);
+		for (HuffmanNode node : nodes) {
+			queue.insert(node);
+		}
+		while (queue.size() > 0) {
+			blackhole.consume(queue.popMin());
+		}
+	}
+}